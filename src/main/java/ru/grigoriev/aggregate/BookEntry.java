@@ -0,0 +1,27 @@
+package ru.grigoriev.aggregate;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * Книга внутри {@link PersonAggregate}. Отдельного репозитория нет, id пользователя хранит агрегат.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "book", schema = "myschema")
+public class BookEntry {
+    @Id
+    private Long id;
+
+    private String title;
+
+    private String author;
+
+    private int pageCount;
+
+    private long version;
+}
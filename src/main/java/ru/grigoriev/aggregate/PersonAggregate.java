@@ -0,0 +1,38 @@
+package ru.grigoriev.aggregate;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.MappedCollection;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Пользователь как агрегат Spring Data JDBC: книги принадлежат пользователю и читаются и сохраняются вместе с ним.
+ * При сохранении книги пользователя удаляются и вставляются заново с прежними id.
+ * Пустая версия означает новый агрегат: строки, записанные другими движками, начинаются с версии 0.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "person", schema = "myschema")
+public class PersonAggregate {
+    @Id
+    private Long id;
+
+    private String fullName;
+
+    private String title;
+
+    private int age;
+
+    @Version
+    private Long version;
+
+    @MappedCollection(idColumn = "person_id")
+    private Set<BookEntry> books = new LinkedHashSet<>();
+}
@@ -0,0 +1,177 @@
+package ru.grigoriev.aggregate;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.relational.core.conversion.DbActionExecutionException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.grigoriev.repository.PersonAggregateRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Агрегаты пользователей, общие для сервисов пользователей и книг в пределах транзакции.
+ * Агрегат читается из базы один раз за транзакцию, а изменения, отмеченные через {@link #save},
+ * записываются одним вызовом репозитория перед фиксацией. Проверки изменений нет: сохраняется только то,
+ * что сервис отметил сам. Вне транзакции агрегат читается и сохраняется сразу.
+ * Версия пользователя растет один раз за транзакцию, а не на каждое изменение книг.
+ */
+@Component
+@ConditionalOnProperty(name = "persistence.engine", havingValue = "data-jdbc")
+public class PersonAggregateStore {
+    private final PersonAggregateRepository repository;
+
+    public PersonAggregateStore(PersonAggregateRepository repository) {
+        this.repository = repository;
+    }
+
+    public Optional<PersonAggregate> findById(Long personId) {
+        UnitOfWork unitOfWork = currentUnitOfWork();
+        if (unitOfWork == null) {
+            return repository.findById(personId);
+        }
+        PersonAggregate loaded = unitOfWork.loaded.get(personId);
+        if (loaded != null) {
+            return Optional.of(loaded);
+        }
+        Optional<PersonAggregate> aggregate = repository.findById(personId);
+        aggregate.ifPresent(unitOfWork::put);
+        return aggregate;
+    }
+
+    /**
+     * Отсутствующие в базе id пропускаются, порядок результата не определен.
+     */
+    public List<PersonAggregate> findAllById(Collection<Long> personIds) {
+        UnitOfWork unitOfWork = currentUnitOfWork();
+        List<PersonAggregate> aggregates = new ArrayList<>(personIds.size());
+        Set<Long> missing = new HashSet<>(personIds);
+        if (unitOfWork != null) {
+            missing.removeIf(personId -> {
+                PersonAggregate loaded = unitOfWork.loaded.get(personId);
+                return loaded != null && aggregates.add(loaded);
+            });
+        }
+        if (!missing.isEmpty()) {
+            repository.findAllById(missing).forEach(aggregate -> {
+                if (unitOfWork != null) {
+                    unitOfWork.put(aggregate);
+                }
+                aggregates.add(aggregate);
+            });
+        }
+        return aggregates;
+    }
+
+    /**
+     * Владельцы книг: сначала среди агрегатов текущей транзакции, остальные одним запросом по таблице book.
+     */
+    public List<PersonAggregate> findAllByBookIds(Collection<Long> bookIds) {
+        UnitOfWork unitOfWork = currentUnitOfWork();
+        List<PersonAggregate> aggregates = new ArrayList<>();
+        Set<Long> missing = new HashSet<>(bookIds);
+        if (unitOfWork != null) {
+            for (PersonAggregate loaded : unitOfWork.loaded.values()) {
+                boolean owner = false;
+                for (BookEntry book : loaded.getBooks()) {
+                    owner |= missing.remove(book.getId());
+                }
+                if (owner) {
+                    aggregates.add(loaded);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            aggregates.addAll(findAllById(repository.findPersonIdsByBookIds(missing)));
+        }
+        return aggregates;
+    }
+
+    /**
+     * Новый агрегат должен иметь id и пустую версию.
+     */
+    public void save(PersonAggregate aggregate) {
+        UnitOfWork unitOfWork = currentUnitOfWork();
+        if (unitOfWork == null) {
+            write(aggregate);
+            return;
+        }
+        unitOfWork.put(aggregate);
+        unitOfWork.changed.put(aggregate.getId(), aggregate);
+    }
+
+    /**
+     * Книги удаляются вместе с пользователем, несохраненные изменения агрегата отбрасываются.
+     */
+    public void deleteById(Long personId) {
+        UnitOfWork unitOfWork = currentUnitOfWork();
+        if (unitOfWork != null) {
+            unitOfWork.loaded.remove(personId);
+            unitOfWork.changed.remove(personId);
+        }
+        repository.deleteById(personId);
+    }
+
+    private void write(PersonAggregate aggregate) {
+        try {
+            repository.save(aggregate);
+        } catch (DbActionExecutionException e) {
+            if (e.getCause() instanceof DataAccessException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private UnitOfWork currentUnitOfWork() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        UnitOfWork unitOfWork = (UnitOfWork) TransactionSynchronizationManager.getResource(this);
+        if (unitOfWork == null) {
+            unitOfWork = new UnitOfWork();
+            TransactionSynchronizationManager.bindResource(this, unitOfWork);
+            TransactionSynchronizationManager.registerSynchronization(unitOfWork);
+        }
+        return unitOfWork;
+    }
+
+    private class UnitOfWork implements TransactionSynchronization {
+        private final Map<Long, PersonAggregate> loaded = new HashMap<>();
+        private final Map<Long, PersonAggregate> changed = new LinkedHashMap<>();
+
+        void put(PersonAggregate aggregate) {
+            loaded.put(aggregate.getId(), aggregate);
+        }
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(PersonAggregateStore.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(PersonAggregateStore.this, this);
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            changed.values().forEach(PersonAggregateStore.this::write);
+            changed.clear();
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(PersonAggregateStore.this);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package ru.grigoriev.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@EnableCaching
+@Configuration
+public class CacheConfig {
+    public static final String USER_BOOKS_CACHE = "userBooks";
+
+    /**
+     * Записи и удаления из кэша откладываются до фиксации транзакции,
+     * статистика Caffeine публикуется actuator-ом как метрики cache.*.
+     */
+    @Bean
+    public CacheManager cacheManager(@Value("${user-cache.maximum-size}") long maximumSize,
+                                     @Value("${user-cache.expire-after-write}") Duration expireAfterWrite) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(USER_BOOKS_CACHE);
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats());
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+}
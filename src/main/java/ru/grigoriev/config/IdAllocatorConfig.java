@@ -0,0 +1,52 @@
+package ru.grigoriev.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.grigoriev.generator.IdAllocator;
+import ru.grigoriev.generator.IdAllocatorGenerator;
+import ru.grigoriev.generator.SequenceBlockIdAllocator;
+import ru.grigoriev.generator.SnowflakeIdAllocator;
+
+import java.util.Objects;
+
+@Slf4j
+@Configuration
+public class IdAllocatorConfig {
+    private static final String NEXT_BLOCK_SQL = "SELECT nextval('sequence')";
+    private static final String INCREMENT_SQL = "SELECT seqincrement FROM pg_sequence WHERE seqrelid = 'sequence'::regclass";
+    /**
+     * Шаг только растет: блок экземпляра, запущенного с большим блоком, не должен пересечься со следующим значением.
+     * Advisory lock не дает двум стартующим экземплярам уменьшить шаг, установленный соседом.
+     */
+    private static final String RAISE_INCREMENT_SQL = "DO $$ BEGIN "
+            + "PERFORM pg_advisory_xact_lock(hashtext('sequence')); "
+            + "IF (" + INCREMENT_SQL + ") < %1$d THEN ALTER SEQUENCE sequence INCREMENT BY %1$d; END IF; "
+            + "END $$";
+
+    /**
+     * Уменьшение block-size безопасно: экземпляр берет из каждого значения последовательности меньше id, чем она резервирует.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "id-allocator.type", havingValue = "sequence", matchIfMissing = true)
+    public IdAllocator sequenceBlockIdAllocator(JdbcTemplate jdbcTemplate,
+                                                @Value("${id-allocator.block-size:100}") int blockSize) {
+        IdAllocator allocator = new SequenceBlockIdAllocator(
+                () -> Objects.requireNonNull(jdbcTemplate.queryForObject(NEXT_BLOCK_SQL, Long.class)), blockSize);
+        jdbcTemplate.execute(String.format(RAISE_INCREMENT_SQL, blockSize));
+        log.info("Id blocks of {}, sequence increment {}", blockSize, jdbcTemplate.queryForObject(INCREMENT_SQL, Long.class));
+        IdAllocatorGenerator.register(allocator);
+        return allocator;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "id-allocator.type", havingValue = "snowflake")
+    public IdAllocator snowflakeIdAllocator(@Value("${id-allocator.node-id:0}") long nodeId) {
+        IdAllocator allocator = new SnowflakeIdAllocator(nodeId);
+        IdAllocatorGenerator.register(allocator);
+        return allocator;
+    }
+}
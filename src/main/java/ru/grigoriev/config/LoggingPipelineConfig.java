@@ -0,0 +1,23 @@
+package ru.grigoriev.config;
+
+import ch.qos.logback.classic.LoggerContext;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.grigoriev.logging.LoggingPipeline;
+
+@Configuration
+@EnableConfigurationProperties(LoggingPipelineProperties.class)
+public class LoggingPipelineConfig {
+
+    /**
+     * До создания этого бина, то есть во время старта приложения, логи пишутся синхронно и без выборки.
+     */
+    @Bean
+    public LoggingPipeline loggingPipeline(LoggingPipelineProperties properties) {
+        LoggingPipeline loggingPipeline = new LoggingPipeline((LoggerContext) LoggerFactory.getILoggerFactory(), properties);
+        loggingPipeline.start();
+        return loggingPipeline;
+    }
+}
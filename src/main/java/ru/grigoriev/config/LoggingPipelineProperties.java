@@ -0,0 +1,32 @@
+package ru.grigoriev.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.logging.LogLevel;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Асинхронная запись логов и выборка событий. Ключ sampling - логгер (вместе с дочерними),
+ * затем уровень и N: пишется одно событие из N.
+ */
+@Data
+@ConfigurationProperties("logging-pipeline")
+public class LoggingPipelineProperties {
+    private Async async = new Async();
+    private Map<String, Map<LogLevel, Integer>> sampling = new LinkedHashMap<>();
+
+    /**
+     * Очередь фиксированного размера. Поток запроса никогда не ждет appender: при заполнении на
+     * discarding-threshold свободных мест отбрасываются TRACE, DEBUG и INFO, при полной очереди - все события.
+     */
+    @Data
+    public static class Async {
+        private boolean enabled;
+        private int queueSize = 8192;
+        private int discardingThreshold = 1024;
+        private Duration maxFlushTime = Duration.ofSeconds(1);
+    }
+}
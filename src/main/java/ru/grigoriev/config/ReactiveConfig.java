@@ -0,0 +1,83 @@
+package ru.grigoriev.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.PropertyMapper;
+import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.dialect.PostgresDialect;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import ru.grigoriev.web.ReactiveUserHandler;
+import ru.grigoriev.web.constant.WebConstant;
+
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+/**
+ * Профиль reactive: Netty и R2DBC вместо Tomcat и JDBC для создания, обновления, чтения и удаления пользователя.
+ * Пул соединений R2DBC и его менеджер транзакций не публикуются бинами: иначе Spring Boot отключит
+ * автоконфигурацию DataSource и менеджера транзакций JPA, на которых работает все остальное приложение.
+ */
+@Configuration
+@Profile("reactive")
+@EnableConfigurationProperties(R2dbcProperties.class)
+public class ReactiveConfig implements DisposableBean {
+    private final ConnectionPool connectionPool;
+
+    public ReactiveConfig(R2dbcProperties properties) {
+        ConnectionFactoryBuilder connectionFactory = ConnectionFactoryBuilder.withUrl(properties.getUrl());
+        PropertyMapper map = PropertyMapper.get().alwaysApplyingWhenNonNull();
+        map.from(properties::getUsername).to(connectionFactory::username);
+        map.from(properties::getPassword).to(connectionFactory::password);
+        R2dbcProperties.Pool pool = properties.getPool();
+        this.connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(connectionFactory.build())
+                .initialSize(pool.getInitialSize())
+                .maxSize(pool.getMaxSize())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .build());
+    }
+
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean
+    public R2dbcEntityTemplate r2dbcEntityTemplate() {
+        DatabaseClient databaseClient = DatabaseClient.builder()
+                .connectionFactory(connectionPool)
+                .bindMarkers(PostgresDialect.INSTANCE.getBindMarkersFactory())
+                .build();
+        return new R2dbcEntityTemplate(databaseClient, PostgresDialect.INSTANCE);
+    }
+
+    @Bean
+    public TransactionalOperator reactiveTransactionalOperator() {
+        return TransactionalOperator.create(new R2dbcTransactionManager(connectionPool));
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> reactiveUserRoutes(ReactiveUserHandler handler) {
+        return route().path(WebConstant.VERSION_URL + "/user", builder -> builder
+                        .POST("/create", handler::createUserWithBooks)
+                        .PUT("/update/{userId}", handler::updateUserWithBooks)
+                        .GET("/get/{userId}", handler::getUserWithBooks)
+                        .DELETE("/delete/{userId}", handler::deleteUserWithBooks))
+                .build();
+    }
+
+    @Override
+    public void destroy() {
+        connectionPool.dispose();
+    }
+}
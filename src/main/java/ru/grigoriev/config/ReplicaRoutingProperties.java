@@ -0,0 +1,28 @@
+package ru.grigoriev.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Реплики для read-only транзакций. Основная база настраивается через spring.datasource.
+ */
+@Data
+@ConfigurationProperties("replica-routing")
+public class ReplicaRoutingProperties {
+    private boolean enabled;
+    private Duration maxLag = Duration.ofSeconds(5);
+    private Duration healthCheckInterval = Duration.ofSeconds(5);
+    private List<Replica> replicas = new ArrayList<>();
+
+    @Data
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+    }
+}
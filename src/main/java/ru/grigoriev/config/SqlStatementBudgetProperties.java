@@ -0,0 +1,24 @@
+package ru.grigoriev.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Допустимое число SQL-запросов на HTTP-запрос. Ключ бюджета - метод и шаблон пути,
+ * например "GET /api/v1/user/get/{userId}". Для остальных endpoint-ов действует defaultBudget.
+ * При failOnExceeded запрос, превысивший бюджет до записи тела, завершается ошибкой 500.
+ */
+@Data
+@ConfigurationProperties("sql-statements")
+public class SqlStatementBudgetProperties {
+    private int defaultBudget = 50;
+    private Map<String, Integer> budgets = new LinkedHashMap<>();
+    private boolean failOnExceeded;
+
+    public int budgetFor(String endpoint) {
+        return budgets.getOrDefault(endpoint, defaultBudget);
+    }
+}
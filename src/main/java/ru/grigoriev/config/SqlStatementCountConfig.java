@@ -0,0 +1,44 @@
+package ru.grigoriev.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.jdbc.JdbcProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.grigoriev.statistics.SqlStatementCounter;
+import ru.grigoriev.statistics.SqlStatementCountingInspector;
+import ru.grigoriev.statistics.SqlStatementCountingJdbcTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * Подсчет SQL-запросов HTTP-запроса: Hibernate сообщает о них через StatementInspector,
+ * JdbcTemplate-сервисы - через {@link SqlStatementCountingJdbcTemplate}.
+ */
+@Configuration
+@EnableConfigurationProperties(SqlStatementBudgetProperties.class)
+public class SqlStatementCountConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer sqlStatementCountCustomizer(SqlStatementCounter counter) {
+        return hibernateProperties -> hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR,
+                new SqlStatementCountingInspector(counter));
+    }
+
+    /**
+     * Заменяет автоконфигурируемый JdbcTemplate, настройки spring.jdbc.template переносятся как есть.
+     */
+    @Bean
+    public JdbcTemplate jdbcTemplate(DataSource dataSource, JdbcProperties jdbcProperties, SqlStatementCounter counter) {
+        JdbcTemplate jdbcTemplate = new SqlStatementCountingJdbcTemplate(dataSource, counter);
+        JdbcProperties.Template template = jdbcProperties.getTemplate();
+        jdbcTemplate.setFetchSize(template.getFetchSize());
+        jdbcTemplate.setMaxRows(template.getMaxRows());
+        if (template.getQueryTimeout() != null) {
+            jdbcTemplate.setQueryTimeout((int) template.getQueryTimeout().getSeconds());
+        }
+        return jdbcTemplate;
+    }
+}
@@ -0,0 +1,92 @@
+package ru.grigoriev.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tomcat выполняет каждый запрос в новом виртуальном потоке (Java 21, профиль сборки java21). Экспериментальный режим.
+ * Виртуальный поток, заблокированный внутри synchronized, занимает несущий поток, поэтому
+ * приложение не стартует с драйвером PostgreSQL, который еще синхронизируется через synchronized.
+ * Код приложения не обращается к базе внутри synchronized; оставшиеся закрепления печатает
+ * {@code -Djdk.tracePinnedThreads=short}.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "virtual-threads.enabled", havingValue = "true")
+@EnableConfigurationProperties(VirtualThreadProperties.class)
+public class VirtualThreadConfig {
+    static final int NON_PINNING_DRIVER_MAJOR_VERSION = 42;
+    static final int NON_PINNING_DRIVER_MINOR_VERSION = 6;
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService virtualThreadExecutor() {
+        org.postgresql.Driver driver = new org.postgresql.Driver();
+        requireNonPinningDriver(driver.getMajorVersion(), driver.getMinorVersion());
+        return newVirtualThreadPerTaskExecutor();
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer(
+            ExecutorService virtualThreadExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+
+    /**
+     * Пул фиксированного размера: ожидающие соединения виртуальные потоки дешевы,
+     * а ожидание ограничено connection-timeout, чтобы медленная база не копила запросы бесконечно.
+     */
+    @Bean
+    public static BeanPostProcessor virtualThreadPoolSizing(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource dataSource) {
+                    VirtualThreadProperties properties = Binder.get(environment)
+                            .bindOrCreate("virtual-threads", VirtualThreadProperties.class);
+                    dataSource.setMaximumPoolSize(properties.getPoolSize());
+                    dataSource.setMinimumIdle(properties.getPoolSize());
+                    dataSource.setConnectionTimeout(properties.getConnectionTimeout().toMillis());
+                    log.info("Hikari pool {} sized for virtual threads: {}", beanName, properties);
+                }
+                return bean;
+            }
+        };
+    }
+
+    static void requireNonPinningDriver(int majorVersion, int minorVersion) {
+        if (majorVersion < NON_PINNING_DRIVER_MAJOR_VERSION
+                || majorVersion == NON_PINNING_DRIVER_MAJOR_VERSION && minorVersion < NON_PINNING_DRIVER_MINOR_VERSION) {
+            throw new IllegalStateException("PostgreSQL driver " + majorVersion + "." + minorVersion
+                    + " locks with synchronized and pins virtual threads, build with -Pjava21");
+        }
+    }
+
+    /**
+     * Метод Java 21 вызывается через MethodHandle, чтобы класс собирался и основной сборкой на Java 17.
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) MethodHandles.publicLookup()
+                    .findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class))
+                    .invoke();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Virtual threads require Java 21, running on " + Runtime.version(), e);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Virtual thread executor could not be created", e);
+        }
+    }
+}
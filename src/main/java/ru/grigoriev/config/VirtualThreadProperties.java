@@ -0,0 +1,18 @@
+package ru.grigoriev.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Обработка HTTP-запросов на виртуальных потоках. Число одновременных запросов больше не ограничено
+ * пулом потоков Tomcat, поэтому обращения к базе ограничивает пул Hikari фиксированного размера.
+ */
+@Data
+@ConfigurationProperties("virtual-threads")
+public class VirtualThreadProperties {
+    private boolean enabled;
+    private int poolSize = 10;
+    private Duration connectionTimeout = Duration.ofSeconds(5);
+}
@@ -0,0 +1,187 @@
+package ru.grigoriev.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Направляет read-only транзакции на реплики по кругу, остальные соединения - на основную базу.
+ * Реплики проверяются раз в {@code healthCheckInterval}: недоступная или отстающая больше {@code maxLag}
+ * реплика исключается до следующей успешной проверки. Если подходящих реплик нет
+ * или реплика не выдала соединение, используется основная база.
+ * Пулы реплик закрываются вместе с маршрутизатором. Оборачивается в LazyConnectionDataSourceProxy: признак read-only известен только после начала транзакции.
+ * Чтения, результат которых кэшируется, выполняются через {@link #readFromPrimary(Supplier)}:
+ * устаревшая строка с реплики иначе прожила бы в кэше дольше допустимого {@code maxLag}.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+    public static final String PRIMARY = "primary";
+
+    private static final ThreadLocal<Boolean> PRIMARY_READ = ThreadLocal.withInitial(() -> false);
+
+    private final DataSource primary;
+    private final Map<String, Replica> replicas = new LinkedHashMap<>();
+    private final Duration maxLag;
+    private final Duration healthCheckInterval;
+    private final ReplicationLagProbe lagProbe;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private ScheduledExecutorService healthChecker;
+
+    public ReplicaRoutingDataSource(DataSource primary,
+                                    Map<String, DataSource> replicaDataSources,
+                                    Duration maxLag,
+                                    Duration healthCheckInterval,
+                                    ReplicationLagProbe lagProbe) {
+        this.primary = primary;
+        this.maxLag = maxLag;
+        this.healthCheckInterval = healthCheckInterval;
+        this.lagProbe = lagProbe;
+
+        Map<Object, Object> targetDataSources = new LinkedHashMap<>();
+        targetDataSources.put(PRIMARY, primary);
+        replicaDataSources.forEach((name, dataSource) -> {
+            replicas.put(name, new Replica(name, dataSource));
+            targetDataSources.put(name, dataSource);
+        });
+        setTargetDataSources(targetDataSources);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        if (replicas.isEmpty()) {
+            return;
+        }
+        healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        healthChecker.scheduleWithFixedDelay(this::checkReplicas,
+                0, healthCheckInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+        }
+        for (Replica replica : replicas.values()) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    /**
+     * Выполняет чтение на основной базе, даже если транзакция read-only.
+     * Действует на соединения, полученные внутри {@code read}: соединение, уже взятое транзакцией у реплики, не меняется.
+     */
+    public static <T> T readFromPrimary(Supplier<T> read) {
+        boolean outer = PRIMARY_READ.get();
+        PRIMARY_READ.set(true);
+        try {
+            return read.get();
+        } finally {
+            if (!outer) {
+                PRIMARY_READ.remove();
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || PRIMARY_READ.get()) {
+            return PRIMARY;
+        }
+        List<Replica> healthy = replicas.values().stream()
+                .filter(replica -> replica.healthy)
+                .toList();
+        if (healthy.isEmpty()) {
+            return PRIMARY;
+        }
+        return healthy.get(Math.floorMod(nextReplica.getAndIncrement(), healthy.size())).name;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Replica replica = replicas.get(determineCurrentLookupKey());
+        if (replica == null) {
+            return primary.getConnection();
+        }
+        try {
+            return replica.dataSource.getConnection();
+        } catch (SQLException e) {
+            replica.markDown(e.getMessage());
+            log.warn("Replica {} did not give a connection, falling back to primary: {}", replica.name, e.getMessage());
+            return primary.getConnection();
+        }
+    }
+
+    public Map<String, String> getReplicaStatus() {
+        Map<String, String> status = new LinkedHashMap<>();
+        replicas.values().forEach(replica -> status.put(replica.name, replica.healthy
+                ? "UP, lag " + replica.lag.toMillis() + " ms"
+                : "DOWN, " + replica.lastError));
+        return status;
+    }
+
+    void checkReplicas() {
+        for (Replica replica : replicas.values()) {
+            try {
+                Duration lag = lagProbe.lag(replica.dataSource);
+                if (lag.compareTo(maxLag) > 0) {
+                    replica.markDown("lag " + lag.toMillis() + " ms exceeds " + maxLag.toMillis() + " ms");
+                } else {
+                    replica.markUp(lag);
+                }
+            } catch (SQLException | RuntimeException e) {
+                replica.markDown(e.getMessage());
+            }
+        }
+    }
+
+    private static class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy;
+        private volatile Duration lag = Duration.ZERO;
+        private volatile String lastError = "not checked yet";
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        void markUp(Duration lag) {
+            this.lag = lag;
+            if (!healthy) {
+                log.info("Replica {} is up, lag {} ms", name, lag.toMillis());
+            }
+            healthy = true;
+        }
+
+        void markDown(String error) {
+            lastError = error;
+            if (healthy) {
+                log.warn("Replica {} is down: {}", name, error);
+            }
+            healthy = false;
+        }
+    }
+}
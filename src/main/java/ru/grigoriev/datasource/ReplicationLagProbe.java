@@ -0,0 +1,38 @@
+package ru.grigoriev.datasource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+/**
+ * Отставание реплики от основной базы данных.
+ */
+@FunctionalInterface
+public interface ReplicationLagProbe {
+    /**
+     * Реплика, которая проиграла весь полученный WAL, не отстает, даже если основная база давно не писала.
+     * База не в режиме восстановления (не реплика) тоже считается не отстающей.
+     */
+    String REPLICATION_LAG_SQL = "SELECT CASE WHEN NOT pg_is_in_recovery() " +
+            "OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0) END";
+    int QUERY_TIMEOUT_SECONDS = 2;
+
+    Duration lag(DataSource replica) throws SQLException;
+
+    static ReplicationLagProbe postgres() {
+        return replica -> {
+            try (Connection connection = replica.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+                try (ResultSet rs = statement.executeQuery(REPLICATION_LAG_SQL)) {
+                    rs.next();
+                    return Duration.ofMillis(rs.getLong(1));
+                }
+            }
+        };
+    }
+}
@@ -8,13 +8,13 @@ import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.Size;
 
 @Data
-@EqualsAndHashCode(exclude = {"id", "userId"})
+@EqualsAndHashCode(exclude = {"id", "userId", "version"})
 public class BookDto {
     private Long id;
     private Long userId;
 
     @NotEmpty(message = "Title should not be empty")
-    @Size(min = 2, max = 70, message = "Title should be between 2 and 70 characters")
+    @Size(min = 2, max = 50, message = "Title should be between 2 and 50 characters")
     private String title;
 
     @NotEmpty(message = "Author should not be empty")
@@ -23,4 +23,6 @@ public class BookDto {
 
     @Min(value = 1, message = "PageCount count should be over zero")
     private long pageCount;
+
+    private long version;
 }
@@ -0,0 +1,26 @@
+package ru.grigoriev.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+@Builder
+public class ImportStatusDto {
+    private String importId;
+    private ImportState state;
+    private long usersImported;
+    private long booksImported;
+    private long recordsRejected;
+    private long chunksFailed;
+    private String lastError;
+    private Instant startedAt;
+    private Instant finishedAt;
+
+    public enum ImportState {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
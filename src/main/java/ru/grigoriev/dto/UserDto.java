@@ -20,4 +20,6 @@ public class UserDto {
 
     @Min(value = 7, message = "Age should be over six")
     private int age;
+
+    private long version;
 }
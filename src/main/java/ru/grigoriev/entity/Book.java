@@ -4,6 +4,11 @@ package ru.grigoriev.entity;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import ru.grigoriev.config.SecondLevelCacheConfig;
+import ru.grigoriev.generator.IdAllocatorGenerator;
 
 import javax.persistence.*;
 
@@ -11,11 +16,12 @@ import javax.persistence.*;
 @Setter
 @NoArgsConstructor
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.BOOK_REGION)
 @Table(name = "book", schema = "myschema")
 public class Book {
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequence")
-    @SequenceGenerator(name = "sequence", sequenceName = "sequence", allocationSize = 100)
+    @GeneratedValue(generator = IdAllocatorGenerator.NAME)
+    @GenericGenerator(name = IdAllocatorGenerator.NAME, strategy = IdAllocatorGenerator.STRATEGY)
     private Long id;
 
     @Column(nullable = false)
@@ -27,6 +33,10 @@ public class Book {
     @Column(nullable = false)
     private int pageCount;
 
+    @Version
+    @Column(nullable = false)
+    private long version;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "person_id", nullable = false)
     private Person person;
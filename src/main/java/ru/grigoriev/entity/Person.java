@@ -4,6 +4,11 @@ package ru.grigoriev.entity;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import ru.grigoriev.config.SecondLevelCacheConfig;
+import ru.grigoriev.generator.IdAllocatorGenerator;
 
 import javax.persistence.*;
 import java.util.Set;
@@ -13,11 +18,12 @@ import java.util.Set;
 @Setter
 @NoArgsConstructor
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.PERSON_REGION)
 @Table(name = "person", schema = "myschema")
 public class Person {
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequence")
-    @SequenceGenerator(name = "sequence", sequenceName = "sequence", allocationSize = 100)
+    @GeneratedValue(generator = IdAllocatorGenerator.NAME)
+    @GenericGenerator(name = IdAllocatorGenerator.NAME, strategy = IdAllocatorGenerator.STRATEGY)
     private Long id;
 
     @Column(nullable = false)
@@ -29,6 +35,10 @@ public class Person {
     @Column(nullable = false)
     private int age;
 
+    @Version
+    @Column(nullable = false)
+    private long version;
+
 //    @Column(nullable = false)
 //    private Long count;
 
@@ -0,0 +1,29 @@
+package ru.grigoriev.entity.reactive;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * Строка myschema.book для R2DBC (профиль reactive).
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "book", schema = "myschema")
+public class BookRecord {
+    @Id
+    private Long id;
+
+    private Long personId;
+
+    private String title;
+
+    private String author;
+
+    private int pageCount;
+
+    private long version;
+}
@@ -0,0 +1,30 @@
+package ru.grigoriev.entity.reactive;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * Строка myschema.person для R2DBC (профиль reactive). Id выдает {@link ru.grigoriev.generator.IdAllocator},
+ * поэтому новые строки вставляются через R2dbcEntityTemplate#insert, а не save.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "person", schema = "myschema")
+public class PersonRecord {
+    @Id
+    private Long id;
+
+    private String fullName;
+
+    private String title;
+
+    private int age;
+
+    @Version
+    private Long version;
+}
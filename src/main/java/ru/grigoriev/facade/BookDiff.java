@@ -0,0 +1,85 @@
+package ru.grigoriev.facade;
+
+import lombok.Getter;
+import ru.grigoriev.dto.BookDto;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Разница между книгами из запроса и книгами пользователя в базе данных.
+ * Книги сравниваются по {@link BookDto#equals(Object)} (название, автор, число страниц),
+ * поэтому каждая сторона хэшируется один раз и сравнение выполняется за O(n + m).
+ * Одинаковые книги считаются поштучно: в базе остается столько копий, сколько их в запросе,
+ * как и при создании пользователя с книгами.
+ * Книги из базы можно передавать по одной через {@link #accumulate(Collection)}.
+ */
+@Getter
+public final class BookDiff {
+    private final List<BookDto> toInsert;
+    private final List<BookDto> unchanged;
+    private final List<BookDto> toDelete;
+
+    private BookDiff(List<BookDto> toInsert, List<BookDto> unchanged, List<BookDto> toDelete) {
+        this.toInsert = toInsert;
+        this.unchanged = unchanged;
+        this.toDelete = toDelete;
+    }
+
+    public static BookDiff calculate(Collection<BookDto> requested, Collection<BookDto> stored) {
+        Accumulator accumulator = accumulate(requested);
+        stored.forEach(accumulator);
+        return accumulator.finish();
+    }
+
+    public static Accumulator accumulate(Collection<BookDto> requested) {
+        return new Accumulator(requested);
+    }
+
+    /**
+     * Принимает книги из базы по одной и хранит только совпавшие с запросом и удаляемые.
+     */
+    public static final class Accumulator implements Consumer<BookDto> {
+        private final Collection<BookDto> requested;
+        private final Map<BookDto, Integer> unmatchedCount = new HashMap<>();
+        private final Map<BookDto, Deque<BookDto>> matchedStored = new HashMap<>();
+        private final List<BookDto> toDelete = new ArrayList<>();
+
+        private Accumulator(Collection<BookDto> requested) {
+            this.requested = requested;
+            requested.forEach(requestedBook -> unmatchedCount.merge(requestedBook, 1, Integer::sum));
+        }
+
+        @Override
+        public void accept(BookDto storedBook) {
+            Integer unmatched = unmatchedCount.get(storedBook);
+            if (unmatched == null || unmatched == 0) {
+                toDelete.add(storedBook);
+                return;
+            }
+            unmatchedCount.put(storedBook, unmatched - 1);
+            matchedStored.computeIfAbsent(storedBook, book -> new ArrayDeque<>()).add(storedBook);
+        }
+
+        public BookDiff finish() {
+            List<BookDto> toInsert = new ArrayList<>();
+            List<BookDto> unchanged = new ArrayList<>();
+            for (BookDto requestedBook : requested) {
+                Deque<BookDto> storedBooks = matchedStored.get(requestedBook);
+                BookDto storedBook = storedBooks == null ? null : storedBooks.poll();
+                if (storedBook == null) {
+                    toInsert.add(requestedBook);
+                } else {
+                    unchanged.add(storedBook);
+                }
+            }
+            return new BookDiff(toInsert, unchanged, toDelete);
+        }
+    }
+}
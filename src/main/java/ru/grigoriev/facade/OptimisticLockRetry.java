@@ -0,0 +1,62 @@
+package ru.grigoriev.facade;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Повтор действия после конфликта версий не более {@code maxAttempts} раз.
+ * Задержка растет экспоненциально от {@code initialBackoff} до {@code maxBackoff} и выбирается случайно
+ * в верхней половине интервала, чтобы конкурирующие запросы не повторялись одновременно.
+ * Действие должно само открывать и фиксировать транзакцию.
+ */
+@Slf4j
+@Component
+public class OptimisticLockRetry {
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    public OptimisticLockRetry(@Value("${user-update.retry.max-attempts:3}") int maxAttempts,
+                               @Value("${user-update.retry.initial-backoff:20ms}") Duration initialBackoff,
+                               @Value("${user-update.retry.max-backoff:200ms}") Duration maxBackoff) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMillis = initialBackoff.toMillis();
+        this.maxBackoffMillis = Math.max(initialBackoffMillis, maxBackoff.toMillis());
+    }
+
+    public <T> T execute(Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    log.error("Optimistic lock conflict, giving up after {} attempts: {}", attempt, e.getMessage());
+                    throw e;
+                }
+                long backoff = backoffMillis(attempt);
+                log.warn("Optimistic lock conflict, attempt {} of {}, retrying in {} ms", attempt, maxAttempts, backoff);
+                sleep(backoff, e);
+            }
+        }
+    }
+
+    long backoffMillis(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        return ceiling == 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    private void sleep(long millis, OptimisticLockingFailureException conflict) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw conflict;
+        }
+    }
+}
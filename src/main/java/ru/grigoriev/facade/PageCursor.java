@@ -0,0 +1,39 @@
+package ru.grigoriev.facade;
+
+import ru.grigoriev.exception.NotFoundException;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Курсор keyset-пагинации: id последнего элемента страницы в base64url.
+ */
+public final class PageCursor {
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private PageCursor() {
+    }
+
+    public static String encode(long lastId) {
+        return ENCODER.encodeToString(ByteBuffer.allocate(Long.BYTES).putLong(lastId).array());
+    }
+
+    /**
+     * Пустой курсор означает первую страницу.
+     */
+    public static long decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            byte[] bytes = DECODER.decode(cursor);
+            if (bytes.length != Long.BYTES) {
+                throw new IllegalArgumentException();
+            }
+            return ByteBuffer.wrap(bytes).getLong();
+        } catch (IllegalArgumentException e) {
+            throw new NotFoundException("Invalid page cursor");
+        }
+    }
+}
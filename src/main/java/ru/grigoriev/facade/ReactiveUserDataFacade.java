@@ -0,0 +1,249 @@
+package ru.grigoriev.facade;
+
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+import ru.grigoriev.dto.BookDto;
+import ru.grigoriev.dto.UserDto;
+import ru.grigoriev.entity.reactive.BookRecord;
+import ru.grigoriev.entity.reactive.PersonRecord;
+import ru.grigoriev.exception.NotFoundException;
+import ru.grigoriev.generator.IdAllocator;
+import ru.grigoriev.mapper.BookMapper;
+import ru.grigoriev.mapper.UserMapper;
+import ru.grigoriev.web.request.BookRequest;
+import ru.grigoriev.web.request.UserBookRequest;
+import ru.grigoriev.web.response.UserBookResponse;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validator;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.springframework.data.relational.core.query.Criteria.where;
+import static org.springframework.data.relational.core.query.Query.query;
+
+/**
+ * Создание, обновление, чтение и удаление пользователя с книгами на R2DBC (профиль reactive).
+ * Повторяет правила {@link UserDataFacade}: те же DTO, мапперы, {@link BookDiff} и повтор после конфликта версий,
+ * но ни один поток не ждет базу данных. Ограничения {@link UserDto} и {@link BookDto} проверяются до транзакции,
+ * как их проверяют {@code @Validated} сервисы. Id выделяются одним блоком на запрос в boundedElastic,
+ * потому что {@link IdAllocator} может сходить за блоком в базу через JDBC.
+ */
+@Slf4j
+@Component
+@Profile("reactive")
+public class ReactiveUserDataFacade {
+    final String INSERT_BOOK_SQL = "INSERT INTO myschema.book (id, person_id, title, author, page_count) VALUES ($1, $2, $3, $4, $5)";
+    final String SELECT_BOOK_IDS_SQL = "SELECT id FROM myschema.book WHERE person_id = :personId ORDER BY id";
+
+    private final R2dbcEntityTemplate entityTemplate;
+    private final TransactionalOperator transactionalOperator;
+    private final IdAllocator idAllocator;
+    private final UserMapper userMapper;
+    private final BookMapper bookMapper;
+    private final Validator validator;
+    private final Retry optimisticLockRetry;
+
+    public ReactiveUserDataFacade(R2dbcEntityTemplate entityTemplate,
+                                  TransactionalOperator transactionalOperator,
+                                  IdAllocator idAllocator,
+                                  UserMapper userMapper,
+                                  BookMapper bookMapper,
+                                  Validator validator,
+                                  @Value("${user-update.retry.max-attempts:3}") int maxAttempts,
+                                  @Value("${user-update.retry.initial-backoff:20ms}") Duration initialBackoff,
+                                  @Value("${user-update.retry.max-backoff:200ms}") Duration maxBackoff) {
+        this.entityTemplate = entityTemplate;
+        this.transactionalOperator = transactionalOperator;
+        this.idAllocator = idAllocator;
+        this.userMapper = userMapper;
+        this.bookMapper = bookMapper;
+        this.validator = validator;
+        this.optimisticLockRetry = Retry.backoff(Math.max(0, maxAttempts - 1), initialBackoff)
+                .maxBackoff(maxBackoff)
+                .filter(OptimisticLockingFailureException.class::isInstance)
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+    }
+
+    public Mono<UserBookResponse> createUserWithBooks(UserBookRequest userBookRequest) {
+        return Mono.fromCallable(() -> validUserDto(userBookRequest))
+                .flatMap(userDto -> {
+                    List<BookDto> bookDtoList = validBookDtoList(userBookRequest);
+                    return allocateIds(1 + bookDtoList.size()).flatMap(ids -> {
+                        PersonRecord person = userMapper.userDtoToPersonRecord(userDto);
+                        person.setId(ids[0]);
+                        person.setVersion(null);
+                        long[] bookIdList = new long[bookDtoList.size()];
+                        for (int i = 0; i < bookDtoList.size(); i++) {
+                            bookDtoList.get(i).setId(ids[i + 1]);
+                            bookDtoList.get(i).setUserId(person.getId());
+                            bookIdList[i] = ids[i + 1];
+                        }
+                        return entityTemplate.insert(person)
+                                .then(insertBooks(bookDtoList))
+                                .thenReturn(createUserBookResponse(person.getId(), bookIdList));
+                    });
+                })
+                .as(transactionalOperator::transactional)
+                .doOnNext(response -> log.info("Created user {} with books: {}", response.getUserId(), response.getBooksIdList().length));
+    }
+
+    /**
+     * Каждая попытка выполняется в своей транзакции, см. {@link UserDataFacade#updateUserWithBooks}.
+     */
+    public Mono<UserBookResponse> updateUserWithBooks(Long userId, UserBookRequest userBookRequest) {
+        return Mono.fromCallable(() -> validUserDto(userBookRequest))
+                .flatMap(userDto -> {
+                    List<BookDto> requestedBooks = validBookDtoList(userBookRequest);
+                    requestedBooks.forEach(bookDto -> bookDto.setUserId(userId));
+                    return Mono.defer(() -> updateUserWithBooksInTransaction(userId, userDto, requestedBooks)
+                                    .as(transactionalOperator::transactional))
+                            .retryWhen(optimisticLockRetry);
+                });
+    }
+
+    public Mono<UserBookResponse> getUserWithBooks(Long userId) {
+        return entityTemplate.exists(query(where("id").is(userId)), PersonRecord.class)
+                .flatMap(exists -> exists
+                        ? entityTemplate.getDatabaseClient().sql(SELECT_BOOK_IDS_SQL)
+                                .bind("personId", userId)
+                                .map(row -> row.get("id", Long.class))
+                                .all()
+                                .collectList()
+                        : Mono.error(new NotFoundException("User does not exist in the database")))
+                .map(bookIdList -> createUserBookResponse(userId, bookIdList.stream()
+                        .mapToLong(Long::longValue)
+                        .toArray()));
+    }
+
+    /**
+     * Книги удаляет внешний ключ book.person_id с on delete cascade.
+     */
+    public Mono<Void> deleteUserWithBooks(Long userId) {
+        return entityTemplate.delete(query(where("id").is(userId)), PersonRecord.class)
+                .flatMap(deleted -> deleted == 0
+                        ? Mono.error(new NotFoundException("User does not exist in the database"))
+                        : Mono.<Void>empty())
+                .doOnSuccess(ignored -> log.info("User successfully deleted from database: {}", userId));
+    }
+
+    private Mono<UserBookResponse> updateUserWithBooksInTransaction(Long userId, UserDto userDto, List<BookDto> requestedBooks) {
+        return entityTemplate.selectOne(query(where("id").is(userId)), PersonRecord.class)
+                .switchIfEmpty(Mono.error(new NotFoundException("User does not exist in the database")))
+                .flatMap(person -> entityTemplate.select(query(where("person_id").is(userId)), BookRecord.class)
+                        .map(bookMapper::bookRecordToBookDto)
+                        .collect(() -> BookDiff.accumulate(requestedBooks), BookDiff.Accumulator::accept)
+                        .map(BookDiff.Accumulator::finish)
+                        .flatMap(bookDiff -> allocateIds(bookDiff.getToInsert().size()).flatMap(ids -> {
+                            log.info("Books diff for user {}: insert {}, unchanged {}, delete {}", userId,
+                                    bookDiff.getToInsert().size(), bookDiff.getUnchanged().size(), bookDiff.getToDelete().size());
+                            long[] bookIdList = Arrays.copyOf(ids, ids.length + bookDiff.getUnchanged().size());
+                            for (int i = 0; i < ids.length; i++) {
+                                bookDiff.getToInsert().get(i).setId(ids[i]);
+                            }
+                            for (int i = 0; i < bookDiff.getUnchanged().size(); i++) {
+                                bookIdList[ids.length + i] = bookDiff.getUnchanged().get(i).getId();
+                            }
+                            userMapper.updatePersonRecord(userDto, person);
+                            return deleteBooks(userId, bookDiff.getToDelete())
+                                    .then(insertBooks(bookDiff.getToInsert()))
+                                    .then(entityTemplate.update(person))
+                                    .thenReturn(createUserBookResponse(userId, bookIdList));
+                        })));
+    }
+
+    private Mono<Void> deleteBooks(Long userId, List<BookDto> books) {
+        if (books.isEmpty()) {
+            return Mono.empty();
+        }
+        List<Long> bookIds = books.stream().map(BookDto::getId).toList();
+        return entityTemplate.delete(query(where("person_id").is(userId).and("id").in(bookIds)), BookRecord.class).then();
+    }
+
+    /**
+     * Все книги отправляются одним оператором с несколькими наборами параметров: драйвер шлет
+     * их подряд и ждет ответы один раз, а не после каждой строки.
+     */
+    private Mono<Void> insertBooks(List<BookDto> books) {
+        if (books.isEmpty()) {
+            return Mono.empty();
+        }
+        return entityTemplate.getDatabaseClient()
+                .inConnectionMany(connection -> {
+                    Statement statement = connection.createStatement(INSERT_BOOK_SQL);
+                    for (int i = 0; i < books.size(); i++) {
+                        if (i > 0) {
+                            statement.add();
+                        }
+                        BookDto book = books.get(i);
+                        statement.bind(0, book.getId())
+                                .bind(1, book.getUserId())
+                                .bind(2, book.getTitle())
+                                .bind(3, book.getAuthor())
+                                .bind(4, (int) book.getPageCount());
+                    }
+                    return Flux.from(statement.execute()).flatMap(Result::getRowsUpdated);
+                })
+                .then();
+    }
+
+    private Mono<long[]> allocateIds(int count) {
+        if (count == 0) {
+            return Mono.just(new long[0]);
+        }
+        return Mono.fromCallable(() -> {
+                    long[] ids = new long[count];
+                    for (int i = 0; i < count; i++) {
+                        ids[i] = idAllocator.nextId();
+                    }
+                    return ids;
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private UserDto validUserDto(UserBookRequest userBookRequest) {
+        return validDto(Optional.ofNullable(userMapper.userRequestToUserDto(userBookRequest.getUserRequest()))
+                .orElseThrow(() -> new NotFoundException("Invalid request, missing user data!")));
+    }
+
+    private List<BookDto> validBookDtoList(UserBookRequest userBookRequest) {
+        List<BookRequest> bookRequests = Optional.ofNullable(userBookRequest.getBookRequests())
+                .orElseThrow(() -> new NotFoundException("The request is invalid, the list of books is missing"));
+        return bookRequests.stream()
+                .filter(Objects::nonNull)
+                .map(bookMapper::bookRequestToBookDto)
+                .map(this::validDto)
+                .toList();
+    }
+
+    private <T> T validDto(T dto) {
+        Set<ConstraintViolation<T>> violations = validator.validate(dto);
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
+        return dto;
+    }
+
+    private UserBookResponse createUserBookResponse(Long id, long[] list) {
+        return UserBookResponse.builder()
+                .userId(id)
+                .booksIdList(list)
+                .build();
+    }
+}
@@ -1,124 +1,323 @@
 package ru.grigoriev.facade;
 
+import ru.grigoriev.config.CacheConfig;
+import ru.grigoriev.datasource.ReplicaRoutingDataSource;
 import ru.grigoriev.dto.BookDto;
+import ru.grigoriev.dto.ImportStatusDto;
 import ru.grigoriev.dto.UserDto;
 import ru.grigoriev.exception.NotFoundException;
 import ru.grigoriev.mapper.BookMapper;
 import ru.grigoriev.mapper.UserMapper;
-import ru.grigoriev.service.impl.BookServiceImpl;
-import ru.grigoriev.service.impl.UserServiceImpl;
+import ru.grigoriev.service.BookService;
+import ru.grigoriev.service.UserBookExportService;
+import ru.grigoriev.service.UserBookImportService;
+import ru.grigoriev.service.UserService;
 import ru.grigoriev.web.request.BookRequest;
 import ru.grigoriev.web.request.UserBookRequest;
+import ru.grigoriev.web.response.PageResponse;
+import ru.grigoriev.web.response.UserBookBatchItemResponse;
+import ru.grigoriev.web.response.UserBookImportResponse;
 import ru.grigoriev.web.response.UserBookResponse;
+import ru.grigoriev.web.response.UserResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validator;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Transactional
 @Component
 public class UserDataFacade {
-    //    private final UserServiceImplTemplate userService;
-//    private final BookServiceImplTemplate bookService;
-    private final UserServiceImpl userService;
-    private final BookServiceImpl bookService;
+    public static final int MAX_PAGE_LIMIT = 1000;
+
+    private final UserService userService;
+    private final BookService bookService;
     private final UserMapper userMapper;
     private final BookMapper bookMapper;
+    private final UserBookImportService userBookImportService;
+    private final UserBookExportService userBookExportService;
+    private final TransactionTemplate transactionTemplate;
+    private final OptimisticLockRetry optimisticLockRetry;
+    private final Validator validator;
+    private final int batchChunkSize;
 
-    //   public UserDataFacade(UserServiceImplTemplate userService,
-//                          BookServiceImplTemplate bookService,
-    public UserDataFacade(UserServiceImpl userService,
-                          BookServiceImpl bookService,
+    /**
+     * Реализации сервисов (JPA, JdbcTemplate или агрегат Spring Data JDBC) выбираются свойством persistence.engine.
+     */
+    public UserDataFacade(UserService userService,
+                          BookService bookService,
                           UserMapper userMapper,
-                          BookMapper bookMapper) {
+                          BookMapper bookMapper,
+                          UserBookImportService userBookImportService,
+                          UserBookExportService userBookExportService,
+                          TransactionTemplate transactionTemplate,
+                          OptimisticLockRetry optimisticLockRetry,
+                          Validator validator,
+                          @Value("${user-batch.chunk-size:100}") int batchChunkSize) {
         this.userService = userService;
         this.bookService = bookService;
         this.userMapper = userMapper;
         this.bookMapper = bookMapper;
+        this.userBookImportService = userBookImportService;
+        this.userBookExportService = userBookExportService;
+        this.transactionTemplate = transactionTemplate;
+        this.optimisticLockRetry = optimisticLockRetry;
+        this.validator = validator;
+        this.batchChunkSize = Math.max(1, batchChunkSize);
     }
 
     public UserBookResponse createUserWithBooks(UserBookRequest userBookRequest) {
-        log.info("Got user book create request: {}", userBookRequest);
+        log.info("Got user book create request: {} books", bookCount(userBookRequest));
+        log.debug("User book create request: {}", userBookRequest);
 
         UserDto userDto = validUserBookRequestForUser(userBookRequest);
-        log.info("Mapped user request: {}", userDto);
+        log.debug("Mapped user request: {}", userDto);
         List<BookRequest> bookListRequest = validUserBookRequestForBookRequest(userBookRequest);
 
         UserDto createdUser = userService.createUser(userDto);
-        log.info("Created user: {}", createdUser);
-        List<Long> bookIdList = bookListRequest.stream()
+        log.info("Created user: {}", createdUser.getId());
+        List<BookDto> bookDtoList = bookListRequest.stream()
                 .filter(Objects::nonNull)
                 .map(bookMapper::bookRequestToBookDto)
                 .peek(bookDto -> bookDto.setUserId(createdUser.getId()))
-                .peek(mappedBookDto -> log.info("Mapped book: {}", mappedBookDto))
-                .map(bookService::createBook)
-                .peek(createdBook -> log.info("Created book: {}", createdBook))
-                .map(BookDto::getId)
                 .toList();
+        log.info("Mapped books for user {}: {}", createdUser.getId(), bookDtoList.size());
+
+        long[] bookIdList = bookService.createBooks(bookDtoList)
+                .stream()
+                .mapToLong(BookDto::getId)
+                .toArray();
 
-        log.info("Collected books ids: {}", bookIdList);
+        log.info("Collected books ids: {}", bookIdList.length);
 
         return createUserBookResponse(createdUser.getId(), bookIdList);
     }
 
+    /**
+     * Создает пользователей с книгами, фиксируя транзакцию на каждые {@code batchChunkSize} запросов.
+     * Невалидные запросы (включая ограничения {@link UserDto} и {@link BookDto}) отклоняются по одному
+     * до открытия транзакции, при ошибке базы данных
+     * отклоняются все запросы текущей порции.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<UserBookBatchItemResponse> createUsersWithBooks(List<UserBookRequest> userBookRequests) {
+        log.info("Got user book batch create request: {} items", userBookRequests.size());
+
+        UserBookBatchItemResponse[] results = new UserBookBatchItemResponse[userBookRequests.size()];
+        for (int chunkStart = 0; chunkStart < userBookRequests.size(); chunkStart += batchChunkSize) {
+            int chunkEnd = Math.min(chunkStart + batchChunkSize, userBookRequests.size());
+
+            List<Integer> validIndexes = new ArrayList<>(chunkEnd - chunkStart);
+            for (int index = chunkStart; index < chunkEnd; index++) {
+                UserBookRequest userBookRequest = userBookRequests.get(index);
+                try {
+                    if (userBookRequest == null) {
+                        throw new NotFoundException("The request is invalid, the item is missing");
+                    }
+                    validDto(validUserBookRequestForUser(userBookRequest));
+                    validUserBookRequestForBookRequest(userBookRequest).stream()
+                            .filter(Objects::nonNull)
+                            .map(bookMapper::bookRequestToBookDto)
+                            .forEach(this::validDto);
+                    validIndexes.add(index);
+                } catch (NotFoundException | ConstraintViolationException e) {
+                    results[index] = createUserBookBatchItemResponse(index, null, e.getMessage());
+                }
+            }
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> validIndexes.forEach(index ->
+                        results[index] = createUserBookBatchItemResponse(index,
+                                createUserWithBooks(userBookRequests.get(index)), null)));
+            } catch (RuntimeException e) {
+                log.error("User book batch chunk [{}, {}) rolled back: {}", chunkStart, chunkEnd, e.getMessage());
+                validIndexes.forEach(index ->
+                        results[index] = createUserBookBatchItemResponse(index, null, e.getMessage()));
+            }
+        }
+        return List.of(results);
+    }
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public UserBookImportResponse importUsersWithBooks(String importId, InputStream ndjson) {
+        return createUserBookImportResponse(userBookImportService.importUsersWithBooks(importId, ndjson));
+    }
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public UserBookImportResponse getImportStatus(String importId) {
+        return createUserBookImportResponse(userBookImportService.getImportStatus(importId));
+    }
+
+    /**
+     * Тело ответа выполняется после выхода из метода, поэтому транзакцию открывает сам сервис выгрузки.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public StreamingResponseBody exportUsersWithBooks() {
+        return outputStream -> {
+            long exported = userBookExportService.exportUsersWithBooks(outputStream);
+            log.info("Export finished: {} users", exported);
+        };
+    }
+
+    /**
+     * Каждая попытка выполняется в своей транзакции и повторяется, если пользователя
+     * или его книги успел изменить параллельный запрос.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @CacheEvict(cacheNames = CacheConfig.USER_BOOKS_CACHE, key = "#userId")
     public UserBookResponse updateUserWithBooks(Long userId, UserBookRequest userBookRequest) {
-        log.info("Received a request to update a user or books: {}", userBookRequest);
+        log.info("Received a request to update a user or books: userId {}, {} books", userId, bookCount(userBookRequest));
+        log.debug("User book update request: {}", userBookRequest);
+        return optimisticLockRetry.execute(() -> transactionTemplate.execute(status ->
+                updateUserWithBooksInTransaction(userId, userBookRequest)));
+    }
 
+    private UserBookResponse updateUserWithBooksInTransaction(Long userId, UserBookRequest userBookRequest) {
         UserDto userDto = validUserBookRequestForUser(userBookRequest);
         UserDto userDtoFromDateBase = userService.getUserById(userId);
+        long version = userDtoFromDateBase.getVersion();
 
         List<BookRequest> bookListRequest = validUserBookRequestForBookRequest(userBookRequest);
-        List<BookDto> userBooksIdFromDateBase = bookService.getBooksByIdUser(userId);
-        log.info("The user's books successfully retrieved from the database: {}", userBooksIdFromDateBase);
 
         userDtoFromDateBase = userMapper.userDtoToUpdateToUserDto(userDto);
-        log.info("Mapped user (updating fields): {}", userDtoFromDateBase);
+        log.debug("Mapped user (updating fields): {}", userDtoFromDateBase);
         userDtoFromDateBase.setId(userId);
+        userDtoFromDateBase.setVersion(version);
 
-        UserDto finalUserDtoFromDateBase = userDtoFromDateBase;
-        List<Long> bookIdList = bookListRequest
+        List<BookDto> requestedBooks = bookListRequest
                 .stream()
                 .filter(Objects::nonNull)
                 .map(bookMapper::bookRequestToBookDto)
-                .peek(mappedBookDto -> log.info("Mapped book: {}", mappedBookDto))
-                .filter(bookDto -> !userBooksIdFromDateBase.contains(bookDto))
                 .peek(bookDto -> bookDto.setUserId(userId))
-                .map(bookService::updateBook)
-                .peek(updateBook -> log.info("The book has been successfully added to user: {}", updateBook))
+                .toList();
+
+        BookDiff.Accumulator bookDiffAccumulator = BookDiff.accumulate(requestedBooks);
+        bookService.forEachBookByIdUser(userId, bookDiffAccumulator);
+        BookDiff bookDiff = bookDiffAccumulator.finish();
+        log.info("Books diff for user {}: insert {}, unchanged {}, delete {}", userId,
+                bookDiff.getToInsert().size(), bookDiff.getUnchanged().size(), bookDiff.getToDelete().size());
+
+        bookService.deleteBooksByIds(userId, bookDiff.getToDelete()
+                .stream()
                 .map(BookDto::getId)
-                .collect(Collectors.toCollection(ArrayList::new));
+                .toList());
+
+        long[] bookIdList = new long[bookDiff.getToInsert().size() + bookDiff.getUnchanged().size()];
+        int bookCount = 0;
+        if (!bookDiff.getToInsert().isEmpty()) {
+            for (BookDto createdBook : bookService.createBooks(bookDiff.getToInsert())) {
+                bookIdList[bookCount++] = createdBook.getId();
+            }
+        }
+        for (BookDto bookDto : bookDiff.getUnchanged()) {
+            bookIdList[bookCount++] = bookDto.getId();
+        }
 
-        userBooksIdFromDateBase.forEach(bookDto -> bookIdList.add(bookDto.getId()));
         userService.updateUser(userDtoFromDateBase);
         return createUserBookResponse(userId, bookIdList);
     }
 
+    /**
+     * Версия читается до книг: если между запросами успеет зафиксироваться обновление,
+     * ответ получит старую версию и клиент просто перечитает его в следующий раз.
+     * Ответ кэшируется, поэтому читается с основной базы, а не с реплики: строка, прочитанная с отстающей реплики
+     * сразу после сброса кэша обновлением, осталась бы в кэше на весь user-cache.expire-after-write.
+     */
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfig.USER_BOOKS_CACHE, key = "#userId")
     public UserBookResponse getUserWithBooks(Long userId) {
-        UserDto userDtoFromDateBase = userService.getUserById(userId);
+        return loadUserWithBooks(userId);
+    }
 
-        List<BookDto> userBooksIdFromDateBase = bookService.getBooksByIdUser(userId);
-        List<Long> bookIdList = userBooksIdFromDateBase
+    /**
+     * Перечитывает ответ и заменяет им запись кэша. Нужен, когда в кэше оказалось тело старше версии в базе:
+     * чтение, промахнувшееся мимо кэша до обновления, кладет свой результат после фиксации, то есть уже после сброса записи обновлением.
+     */
+    @Transactional(readOnly = true)
+    @CachePut(cacheNames = CacheConfig.USER_BOOKS_CACHE, key = "#userId")
+    public UserBookResponse refreshUserWithBooks(Long userId) {
+        return loadUserWithBooks(userId);
+    }
+
+    /**
+     * Один запрос по первичному ключу мимо кэша ответов, для проверки If-None-Match и свежести тела из кэша.
+     */
+    @Transactional(readOnly = true)
+    public long getUserVersion(Long userId) {
+        return userService.getUserVersion(userId);
+    }
+
+    /**
+     * Пользователи и их книги за два запроса: пользователи по списку id, затем книги всех найденных пользователей.
+     * Порядок ответа повторяет порядок запроса, повторы и отсутствующие в базе id пропускаются.
+     */
+    @Transactional(readOnly = true)
+    public List<UserBookResponse> getUsersWithBooks(List<Long> userIds) {
+        LinkedHashSet<Long> requestedIds = validUserIds(userIds);
+        Set<Long> foundIds = userService.getUsersByIds(requestedIds)
                 .stream()
-                .map(BookDto::getId)
+                .map(UserDto::getId)
+                .collect(Collectors.toSet());
+        Map<Long, List<Long>> bookIdsByUser = bookService.getBookIdsByIdUsers(foundIds);
+        log.info("Users with books retrieved from database: requested {}, found {}", requestedIds.size(), foundIds.size());
+
+        return requestedIds.stream()
+                .filter(foundIds::contains)
+                .map(userId -> createUserBookResponse(userId, bookIdsByUser.getOrDefault(userId, List.of())
+                        .stream()
+                        .mapToLong(Long::longValue)
+                        .toArray()))
                 .toList();
-        return createUserBookResponse(userId, bookIdList);
     }
 
+    @Transactional(readOnly = true)
+    public PageResponse<UserResponse> getUsers(String cursor, int limit) {
+        int pageLimit = validPageLimit(limit);
+        List<UserDto> users = userService.getUsersAfter(PageCursor.decode(cursor), pageLimit + 1);
+        return createPageResponse(users, pageLimit, UserDto::getId, userMapper::userDtoToUserResponse);
+    }
+
+    @Transactional(readOnly = true)
+    public PageResponse<Long> getUserBooks(Long userId, String cursor, int limit) {
+        int pageLimit = validPageLimit(limit);
+        List<Long> bookIds = bookService.getBookIdsByIdUserAfter(userId, PageCursor.decode(cursor), pageLimit + 1);
+        return createPageResponse(bookIds, pageLimit, Function.identity(), Function.identity());
+    }
 
+    @CacheEvict(cacheNames = CacheConfig.USER_BOOKS_CACHE, key = "#userId")
     public void deleteUserWithBooks(Long userId) {
+        bookService.deleteBooksByIdUser(userId);
         userService.deleteUserById(userId);
         log.info("User successfully deleted from database: {}", userId);
-        List<BookDto> userBooksIdFromDateBase = bookService.getBooksByIdUser(userId);
+    }
 
-        userBooksIdFromDateBase.forEach(bookDto -> {
-            bookService.deleteBookById(bookDto.getId());
-            log.info("Book successfully deleted from database: {}", bookDto.getId());
+    private UserBookResponse loadUserWithBooks(Long userId) {
+        return ReplicaRoutingDataSource.readFromPrimary(() -> {
+            long version = userService.getUserVersion(userId);
+            long[] bookIdList = userService.getBookIdsByIdUser(userId);
+            UserBookResponse response = createUserBookResponse(userId, bookIdList);
+            response.setVersion(version);
+            return response;
         });
     }
 
@@ -127,15 +326,82 @@ public class UserDataFacade {
                 .orElseThrow(() -> new NotFoundException("Invalid request, missing user data!"));
     }
 
+    private <T> void validDto(T dto) {
+        Set<ConstraintViolation<T>> violations = validator.validate(dto);
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
+    }
+
     private List<BookRequest> validUserBookRequestForBookRequest(UserBookRequest userBookRequest) {
         return Optional.ofNullable(userBookRequest.getBookRequests())
                 .orElseThrow(() -> new NotFoundException("The request is invalid, the list of books is missing"));
     }
 
-    private UserBookResponse createUserBookResponse(Long id, List<Long> list) {
+    private int bookCount(UserBookRequest userBookRequest) {
+        return userBookRequest.getBookRequests() == null ? 0 : userBookRequest.getBookRequests().size();
+    }
+
+    private LinkedHashSet<Long> validUserIds(List<Long> userIds) {
+        if (userIds == null || userIds.isEmpty() || userIds.stream().anyMatch(Objects::isNull)) {
+            throw new NotFoundException("The request is invalid, the list of user ids is missing or contains null");
+        }
+        LinkedHashSet<Long> distinctIds = new LinkedHashSet<>(userIds);
+        if (distinctIds.size() > MAX_PAGE_LIMIT) {
+            throw new NotFoundException("No more than " + MAX_PAGE_LIMIT + " users can be requested at once");
+        }
+        return distinctIds;
+    }
+
+    private int validPageLimit(int limit) {
+        if (limit < 1 || limit > MAX_PAGE_LIMIT) {
+            throw new NotFoundException("Page limit should be between 1 and " + MAX_PAGE_LIMIT);
+        }
+        return limit;
+    }
+
+    /**
+     * Сервисы возвращают на один элемент больше {@code limit}: его наличие означает, что есть следующая страница.
+     */
+    private <T, R> PageResponse<R> createPageResponse(List<T> rows, int limit,
+                                                      Function<T, Long> idExtractor,
+                                                      Function<T, R> mapper) {
+        boolean hasNext = rows.size() > limit;
+        List<T> page = hasNext ? rows.subList(0, limit) : rows;
+        return PageResponse.<R>builder()
+                .items(page.stream().map(mapper).toList())
+                .nextCursor(hasNext ? PageCursor.encode(idExtractor.apply(page.get(limit - 1))) : null)
+                .build();
+    }
+
+    private UserBookResponse createUserBookResponse(Long id, long[] list) {
         return UserBookResponse.builder()
                 .userId(id)
                 .booksIdList(list)
                 .build();
     }
+
+    private UserBookBatchItemResponse createUserBookBatchItemResponse(int index,
+                                                                      UserBookResponse response,
+                                                                      String errorMessage) {
+        return UserBookBatchItemResponse.builder()
+                .index(index)
+                .response(response)
+                .errorMessage(errorMessage)
+                .build();
+    }
+
+    private UserBookImportResponse createUserBookImportResponse(ImportStatusDto importStatus) {
+        return UserBookImportResponse.builder()
+                .importId(importStatus.getImportId())
+                .state(importStatus.getState().name())
+                .usersImported(importStatus.getUsersImported())
+                .booksImported(importStatus.getBooksImported())
+                .recordsRejected(importStatus.getRecordsRejected())
+                .chunksFailed(importStatus.getChunksFailed())
+                .lastError(importStatus.getLastError())
+                .startedAt(importStatus.getStartedAt())
+                .finishedAt(importStatus.getFinishedAt())
+                .build();
+    }
 }
@@ -0,0 +1,9 @@
+package ru.grigoriev.generator;
+
+/**
+ * Источник первичных ключей, общий для JPA и JdbcTemplate.
+ * Реализации выдают id без обращения к базе данных на каждую вставку.
+ */
+public interface IdAllocator {
+    long nextId();
+}
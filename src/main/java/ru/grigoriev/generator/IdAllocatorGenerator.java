@@ -0,0 +1,31 @@
+package ru.grigoriev.generator;
+
+import org.hibernate.HibernateException;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+
+import java.io.Serializable;
+
+/**
+ * Генератор Hibernate, выдающий id из того же {@link IdAllocator}, что и JdbcTemplate-сервисы.
+ * Hibernate 5 создает генераторы сам, поэтому аллокатор регистрируется статически при создании бина.
+ */
+public class IdAllocatorGenerator implements IdentifierGenerator {
+    public static final String NAME = "idAllocator";
+    public static final String STRATEGY = "ru.grigoriev.generator.IdAllocatorGenerator";
+
+    private static volatile IdAllocator idAllocator;
+
+    public static void register(IdAllocator allocator) {
+        idAllocator = allocator;
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        IdAllocator allocator = idAllocator;
+        if (allocator == null) {
+            throw new HibernateException("IdAllocator is not registered");
+        }
+        return allocator.nextId();
+    }
+}
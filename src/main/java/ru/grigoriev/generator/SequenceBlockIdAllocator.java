@@ -0,0 +1,42 @@
+package ru.grigoriev.generator;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Выдает id из блоков, полученных одним вызовом nextval последовательности.
+ * Последовательность шагает на размер блока (INCREMENT BY), значение nextval - первый id блока:
+ * блок [nextval, nextval + blockSize - 1] не пересекается с чужими, пока шаг последовательности не меньше blockSize.
+ * Шаг выравнивает {@link ru.grigoriev.config.IdAllocatorConfig} при старте и только увеличивает его.
+ * Блок запрашивается под {@link ReentrantLock}, а не synchronized: виртуальный поток, ждущий nextval
+ * внутри synchronized на Java 21, закрепил бы несущий поток.
+ */
+public class SequenceBlockIdAllocator implements IdAllocator {
+    private final LongSupplier nextBlock;
+    private final int blockSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long next;
+    private long blockEnd;
+
+    public SequenceBlockIdAllocator(LongSupplier nextBlock, int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Id block size should be positive, got " + blockSize);
+        }
+        this.nextBlock = nextBlock;
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public long nextId() {
+        lock.lock();
+        try {
+            if (next == blockEnd) {
+                next = nextBlock.getAsLong();
+                blockEnd = next + blockSize;
+            }
+            return next++;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
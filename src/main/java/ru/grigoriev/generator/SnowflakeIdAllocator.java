@@ -0,0 +1,57 @@
+package ru.grigoriev.generator;
+
+import java.time.Instant;
+import java.util.function.LongSupplier;
+
+/**
+ * Упорядоченные по времени id: 41 бит миллисекунд от {@link #EPOCH}, 10 бит номера узла и 12 бит счетчика.
+ * Id монотонно растут на одном узле, поэтому новые строки дописываются в правый край индекса первичного ключа.
+ */
+public class SnowflakeIdAllocator implements IdAllocator {
+    public static final long EPOCH = Instant.parse("2022-01-01T00:00:00Z").toEpochMilli();
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeId;
+    private final LongSupplier clock;
+    private long lastTimestamp = -1L;
+    private long sequence;
+
+    public SnowflakeIdAllocator(long nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    SnowflakeIdAllocator(long nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id should be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+        this.clock = clock;
+    }
+
+    @Override
+    public synchronized long nextId() {
+        long timestamp = Math.max(clock.getAsLong(), lastTimestamp);
+        if (timestamp == lastTimestamp) {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) {
+                timestamp = waitNextMillis(timestamp);
+            }
+        } else {
+            sequence = 0;
+        }
+        lastTimestamp = timestamp;
+        return ((timestamp - EPOCH) << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+
+    private long waitNextMillis(long timestamp) {
+        long next = clock.getAsLong();
+        while (next <= timestamp) {
+            Thread.onSpinWait();
+            next = clock.getAsLong();
+        }
+        return next;
+    }
+}
@@ -0,0 +1,111 @@
+package ru.grigoriev.logging;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import ru.grigoriev.config.LoggingPipelineProperties;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Перестраивает логирование Logback, настроенное Spring Boot: добавляет {@link SamplingTurboFilter}
+ * и переносит каждый appender корневого логгера за свой {@link AsyncAppender} (он принимает только один appender). Поток запроса только кладет событие
+ * в очередь, форматирование и запись выполняет отдельный поток. MDC (requestId) копируется в событие
+ * при постановке в очередь, данные вызывающего метода не собираются.
+ */
+@Slf4j
+public class LoggingPipeline implements DisposableBean {
+    static final String ASYNC_APPENDER_PREFIX = "ASYNC-";
+
+    private final LoggerContext loggerContext;
+    private final LoggingPipelineProperties properties;
+    private final Map<Appender<ILoggingEvent>, AsyncAppender> asyncAppenders = new LinkedHashMap<>();
+    private SamplingTurboFilter samplingFilter;
+
+    public LoggingPipeline(LoggerContext loggerContext, LoggingPipelineProperties properties) {
+        this.loggerContext = loggerContext;
+        this.properties = properties;
+    }
+
+    public void start() {
+        if (!properties.getSampling().isEmpty()) {
+            startSampling();
+        }
+        if (properties.getAsync().isEnabled()) {
+            startAsync();
+        }
+    }
+
+    private void startSampling() {
+        Map<String, Map<Level, Integer>> rules = new HashMap<>();
+        properties.getSampling().forEach((loggerName, levels) -> {
+            Map<Level, Integer> levelRules = new HashMap<>();
+            levels.forEach((level, keepOneIn) -> levelRules.put(Level.toLevel(level.name()), keepOneIn));
+            rules.put(loggerName, levelRules);
+        });
+        samplingFilter = new SamplingTurboFilter(rules);
+        samplingFilter.setContext(loggerContext);
+        samplingFilter.start();
+        loggerContext.addTurboFilter(samplingFilter);
+        log.info("Log sampling enabled: {}", properties.getSampling());
+    }
+
+    private void startAsync() {
+        LoggingPipelineProperties.Async async = properties.getAsync();
+        Logger root = loggerContext.getLogger(Logger.ROOT_LOGGER_NAME);
+        List<Appender<ILoggingEvent>> appenders = new ArrayList<>();
+        root.iteratorForAppenders().forEachRemaining(appenders::add);
+        for (Appender<ILoggingEvent> appender : appenders) {
+            AsyncAppender asyncAppender = new AsyncAppender();
+            asyncAppender.setName(ASYNC_APPENDER_PREFIX + appender.getName());
+            asyncAppender.setContext(loggerContext);
+            asyncAppender.setQueueSize(async.getQueueSize());
+            asyncAppender.setDiscardingThreshold(async.getDiscardingThreshold());
+            asyncAppender.setMaxFlushTime((int) async.getMaxFlushTime().toMillis());
+            asyncAppender.setNeverBlock(true);
+            asyncAppender.setIncludeCallerData(false);
+            asyncAppender.addAppender(appender);
+            asyncAppender.start();
+            root.addAppender(asyncAppender);
+            root.detachAppender(appender);
+            asyncAppenders.put(appender, asyncAppender);
+        }
+        log.info("Asynchronous logging enabled: queue {}, discarding threshold {}, appenders {}",
+                async.getQueueSize(), async.getDiscardingThreshold(), asyncAppenders.size());
+    }
+
+    /**
+     * Возвращает appender-ы корневому логгеру и дописывает очереди. Остановка {@link AsyncAppender}
+     * останавливает и его appender-ы, поэтому они запускаются снова.
+     * Если Logback уже перенастроен (новый контекст Spring), ничего не возвращается.
+     */
+    @Override
+    public void destroy() {
+        if (samplingFilter != null) {
+            loggerContext.getTurboFilterList().remove(samplingFilter);
+            samplingFilter.stop();
+        }
+        Logger root = loggerContext.getLogger(Logger.ROOT_LOGGER_NAME);
+        asyncAppenders.forEach((appender, asyncAppender) -> {
+            boolean attached = root.isAttached(asyncAppender);
+            if (attached) {
+                root.addAppender(appender);
+                root.detachAppender(asyncAppender);
+            }
+            asyncAppender.stop();
+            if (attached && !appender.isStarted()) {
+                appender.start();
+            }
+        });
+        asyncAppenders.clear();
+    }
+}
@@ -0,0 +1,70 @@
+package ru.grigoriev.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пропускает одно событие из N для логгера и уровня. Правило логгера действует и на дочерние логгеры,
+ * выбирается самое точное. Событие отбрасывается до форматирования сообщения и до очереди appender-а.
+ * Счетчик общий для всех логгеров правила, поэтому выборка детерминирована.
+ */
+public class SamplingTurboFilter extends TurboFilter {
+    private static final Map<Level, Sampler> NO_SAMPLERS = Map.of();
+
+    private final Map<String, Map<Level, Sampler>> samplersByRule = new HashMap<>();
+    private final Map<String, Map<Level, Sampler>> samplersByLogger = new ConcurrentHashMap<>();
+
+    /**
+     * @param rules логгер, затем уровень и N
+     */
+    public SamplingTurboFilter(Map<String, Map<Level, Integer>> rules) {
+        rules.forEach((loggerName, levels) -> {
+            Map<Level, Sampler> samplers = new HashMap<>();
+            levels.forEach((level, keepOneIn) -> samplers.put(level, new Sampler(Math.max(1, keepOneIn))));
+            samplersByRule.put(loggerName, samplers);
+        });
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (format == null || !isStarted()) {
+            // isInfoEnabled() и подобные проверки не считаются событиями
+            return FilterReply.NEUTRAL;
+        }
+        Sampler sampler = samplersByLogger.computeIfAbsent(logger.getName(), this::findSamplers).get(level);
+        return sampler == null || sampler.sample() ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    private Map<Level, Sampler> findSamplers(String loggerName) {
+        for (String name = loggerName; ; name = name.substring(0, name.lastIndexOf('.'))) {
+            Map<Level, Sampler> samplers = samplersByRule.get(name);
+            if (samplers != null) {
+                return samplers;
+            }
+            if (name.lastIndexOf('.') < 0) {
+                return NO_SAMPLERS;
+            }
+        }
+    }
+
+    private static final class Sampler {
+        private final int keepOneIn;
+        private final AtomicLong events = new AtomicLong();
+
+        private Sampler(int keepOneIn) {
+            this.keepOneIn = keepOneIn;
+        }
+
+        boolean sample() {
+            return events.getAndIncrement() % keepOneIn == 0;
+        }
+    }
+}
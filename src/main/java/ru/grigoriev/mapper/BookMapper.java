@@ -1,9 +1,12 @@
 package ru.grigoriev.mapper;
 
+import ru.grigoriev.aggregate.BookEntry;
 import ru.grigoriev.dto.BookDto;
 import ru.grigoriev.entity.Book;
+import ru.grigoriev.entity.reactive.BookRecord;
 import ru.grigoriev.web.request.BookRequest;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 
 @Mapper(componentModel = "spring")
 public interface BookMapper {
@@ -15,4 +18,11 @@ public interface BookMapper {
     Book bookDtoToBook(BookDto bookDto);
 
     BookDto bookToBookDto(Book book);
+
+    BookEntry bookDtoToBookEntry(BookDto bookDto);
+
+    BookDto bookEntryToBookDto(BookEntry bookEntry, Long userId);
+
+    @Mapping(target = "userId", source = "personId")
+    BookDto bookRecordToBookDto(BookRecord bookRecord);
 }
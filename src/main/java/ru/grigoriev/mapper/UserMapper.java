@@ -1,9 +1,15 @@
 package ru.grigoriev.mapper;
 
+import ru.grigoriev.aggregate.PersonAggregate;
 import ru.grigoriev.dto.UserDto;
 import ru.grigoriev.entity.Person;
+import ru.grigoriev.entity.reactive.PersonRecord;
+import ru.grigoriev.repository.PersonAggregateRepository;
 import ru.grigoriev.web.request.UserRequest;
+import ru.grigoriev.web.response.UserResponse;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingTarget;
 
 @Mapper(componentModel = "spring")
 public interface UserMapper {
@@ -16,4 +22,24 @@ public interface UserMapper {
     UserDto personToUserDto(Person person);
 
     UserDto userDtoToUpdateToUserDto(UserDto userDto);
+
+    @Mapping(target = "books", ignore = true)
+    PersonAggregate userDtoToPersonAggregate(UserDto userDto);
+
+    UserDto personAggregateToUserDto(PersonAggregate personAggregate);
+
+    UserDto personSummaryToUserDto(PersonAggregateRepository.PersonSummary personSummary);
+
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "books", ignore = true)
+    void updatePersonAggregate(UserDto userDto, @MappingTarget PersonAggregate personAggregate);
+
+    UserResponse userDtoToUserResponse(UserDto userDto);
+
+    PersonRecord userDtoToPersonRecord(UserDto userDto);
+
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    void updatePersonRecord(UserDto userDto, @MappingTarget PersonRecord personRecord);
 }
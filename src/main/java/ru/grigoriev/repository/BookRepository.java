@@ -1,20 +1,73 @@
 package ru.grigoriev.repository;
 
+import ru.grigoriev.config.SecondLevelCacheConfig;
 import ru.grigoriev.entity.Book;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.annotations.QueryHints.CACHEABLE;
+import static org.hibernate.annotations.QueryHints.CACHE_REGION;
+import static org.hibernate.annotations.QueryHints.FETCH_SIZE;
+import static org.hibernate.annotations.QueryHints.READ_ONLY;
 
 @Repository
 public interface BookRepository extends CrudRepository<Book, Long> {
+    String STREAM_FETCH_SIZE = "500";
+
+    /**
+     * Id книг пользователя кэшируются в регионе {@link SecondLevelCacheConfig#BOOKS_BY_PERSON_REGION},
+     * сами книги - в регионе сущности. Любая запись Hibernate в таблицу book сбрасывает результат.
+     */
+    @QueryHints({
+            @QueryHint(name = CACHEABLE, value = "true"),
+            @QueryHint(name = CACHE_REGION, value = SecondLevelCacheConfig.BOOKS_BY_PERSON_REGION)
+    })
     Optional<List<Book>> findAllByPersonId(Long person_id);
 
+    /**
+     * Книги пользователя, читаемые курсором по {@link #STREAM_FETCH_SIZE} строк без снимков для dirty checking.
+     * Поток должен быть закрыт и прочитан внутри транзакции.
+     */
+    @QueryHints({
+            @QueryHint(name = FETCH_SIZE, value = STREAM_FETCH_SIZE),
+            @QueryHint(name = READ_ONLY, value = "true")
+    })
+    @Query("select b from Book b where b.person.id = :personId")
+    Stream<Book> streamAllByPersonId(Long personId);
+
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("select b from Book b where b.id = :id")
     Optional<Book> findByIdForUpdate(long id);
+
+    @Modifying
+    @Query("delete from Book b where b.person.id = :personId and b.id in :ids")
+    int deleteAllByPersonIdAndIdIn(Long personId, Collection<Long> ids);
+
+    @Modifying
+    @Query("delete from Book b where b.person.id = :personId")
+    int deleteAllByPersonId(Long personId);
+
+    @Query("select b.id from Book b where b.person.id = :personId and b.id > :afterId order by b.id")
+    List<Long> findIdPageByPersonIdAfter(Long personId, Long afterId, Pageable pageable);
+
+    @Query("select b.person.id as personId, b.id as id from Book b where b.person.id in :personIds order by b.id")
+    List<PersonBookId> findIdsByPersonIdIn(Collection<Long> personIds);
+
+    interface PersonBookId {
+        Long getPersonId();
+
+        Long getId();
+    }
 }
@@ -0,0 +1,65 @@
+package ru.grigoriev.repository;
+
+import ru.grigoriev.aggregate.PersonAggregate;
+import org.springframework.data.jdbc.repository.query.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Репозиторий Spring Data JDBC: {@link #save} и {@link #findById} работают с пользователем вместе со всеми книгами.
+ * Списки пользователей читаются проекциями без книг: агрегат загружает книги отдельным запросом на каждого пользователя.
+ */
+@Repository
+public interface PersonAggregateRepository extends CrudRepository<PersonAggregate, Long> {
+
+    @Query("SELECT id, full_name, title, age, version FROM myschema.person WHERE id IN (:ids)")
+    List<PersonSummary> findSummariesByIdIn(Collection<Long> ids);
+
+    @Query("SELECT id, full_name, title, age, version FROM myschema.person WHERE id > :afterId ORDER BY id LIMIT :limit")
+    List<PersonSummary> findSummaryPageAfter(Long afterId, int limit);
+
+    @Query("SELECT version FROM myschema.person WHERE id = :id")
+    Optional<Long> findVersionById(Long id);
+
+    @Query("SELECT DISTINCT person_id FROM myschema.book WHERE id IN (:bookIds)")
+    List<Long> findPersonIdsByBookIds(Collection<Long> bookIds);
+
+    /**
+     * Проекции строятся из строк агрегата, поэтому пары id из таблицы book читаются своим {@link RowMapper}.
+     */
+    @Query(value = "SELECT person_id, id FROM myschema.book WHERE person_id IN (:personIds) ORDER BY id",
+            rowMapperClass = PersonBookIdRowMapper.class)
+    List<PersonBookId> findBookIdsByPersonIdIn(Collection<Long> personIds);
+
+    @Query("SELECT id FROM myschema.book WHERE person_id = :personId AND id > :afterId ORDER BY id LIMIT :limit")
+    List<Long> findBookIdPageByPersonIdAfter(Long personId, Long afterId, int limit);
+
+    interface PersonSummary {
+        Long getId();
+
+        String getFullName();
+
+        String getTitle();
+
+        int getAge();
+
+        long getVersion();
+    }
+
+    record PersonBookId(long personId, long id) {
+    }
+
+    class PersonBookIdRowMapper implements RowMapper<PersonBookId> {
+        @Override
+        public PersonBookId mapRow(ResultSet rs, int rowNum) throws SQLException {
+            return new PersonBookId(rs.getLong("person_id"), rs.getLong("id"));
+        }
+    }
+}
@@ -1,12 +1,15 @@
 package ru.grigoriev.repository;
 
 import ru.grigoriev.entity.Person;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -14,4 +17,20 @@ public interface UserRepository extends CrudRepository<Person, Long> {
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("select p from Person p where p.id = :id")
     Optional<Person> findByIdForUpdate(long id);
+
+    /**
+     * Идентификаторы книг пользователя одним запросом.
+     * Пустой список - пользователя нет, список из одного null - у пользователя нет книг.
+     */
+    @Query("select b.id from Person p left join p.bookSet b where p.id = :id order by b.id")
+    List<Long> findBookIdsById(Long id);
+
+    @Query("select p.version from Person p where p.id = :id")
+    Optional<Long> findVersionById(Long id);
+
+    @Query("select p from Person p where p.id in :ids")
+    List<Person> findAllByIdIn(Collection<Long> ids);
+
+    @Query("select p from Person p where p.id > :afterId order by p.id")
+    List<Person> findPageAfter(Long afterId, Pageable pageable);
 }
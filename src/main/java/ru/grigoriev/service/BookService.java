@@ -5,17 +5,43 @@ import ru.grigoriev.dto.BookDto;
 import org.springframework.validation.annotation.Validated;
 
 import javax.validation.Valid;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 @Validated
 public interface BookService {
     BookDto createBook(@Valid BookDto userDto);
 
+    List<BookDto> createBooks(@Valid List<BookDto> bookDtoList);
+
     BookDto updateBook(@Valid BookDto userDto);
 
     BookDto getBookById(Long id);
 
     void deleteBookById(Long id);
 
+    /**
+     * Книги одного пользователя: запрос с person_id читает одну секцию таблицы book.
+     */
+    void deleteBooksByIds(Long userId, List<Long> bookIds);
+
     List<BookDto> getBooksByIdUser(Long userId);
+
+    /**
+     * Передает книги пользователя по одной, не собирая их в список.
+     * Должен вызываться внутри транзакции.
+     */
+    void forEachBookByIdUser(Long userId, Consumer<BookDto> action);
+
+    void deleteBooksByIdUser(Long userId);
+
+    /**
+     * Идентификаторы книг нескольких пользователей одним запросом, сгруппированные по id пользователя.
+     * Пользователи без книг в результат не попадают.
+     */
+    Map<Long, List<Long>> getBookIdsByIdUsers(Collection<Long> userIds);
+
+    List<Long> getBookIdsByIdUserAfter(Long userId, Long afterId, int limit);
 }
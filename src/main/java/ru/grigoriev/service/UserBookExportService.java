@@ -0,0 +1,7 @@
+package ru.grigoriev.service;
+
+import java.io.OutputStream;
+
+public interface UserBookExportService {
+    long exportUsersWithBooks(OutputStream outputStream);
+}
@@ -0,0 +1,11 @@
+package ru.grigoriev.service;
+
+import ru.grigoriev.dto.ImportStatusDto;
+
+import java.io.InputStream;
+
+public interface UserBookImportService {
+    ImportStatusDto importUsersWithBooks(String importId, InputStream ndjson);
+
+    ImportStatusDto getImportStatus(String importId);
+}
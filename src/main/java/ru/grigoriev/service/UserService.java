@@ -4,6 +4,8 @@ import ru.grigoriev.dto.UserDto;
 import org.springframework.validation.annotation.Validated;
 
 import javax.validation.Valid;
+import java.util.Collection;
+import java.util.List;
 
 @Validated
 public interface UserService {
@@ -13,5 +15,23 @@ public interface UserService {
 
     UserDto getUserById(Long userId);
 
+    /**
+     * Версия пользователя по первичному ключу без загрузки пользователя и книг.
+     * Растет при каждом обновлении пользователя или его книг.
+     */
+    long getUserVersion(Long userId);
+
+    /**
+     * Идентификаторы книг пользователя по возрастанию без упаковки в Long.
+     */
+    long[] getBookIdsByIdUser(Long userId);
+
+    /**
+     * Пользователи одним запросом, отсутствующие в базе id пропускаются.
+     */
+    List<UserDto> getUsersByIds(Collection<Long> userIds);
+
+    List<UserDto> getUsersAfter(Long afterId, int limit);
+
     void deleteUserById(Long userId);
 }
@@ -8,24 +8,36 @@ import ru.grigoriev.mapper.BookMapper;
 import ru.grigoriev.repository.BookRepository;
 import ru.grigoriev.service.BookService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
+import javax.persistence.EntityManager;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
+@ConditionalOnProperty(name = "persistence.engine", havingValue = "jpa", matchIfMissing = true)
 public class BookServiceImpl implements BookService {
 
     private final BookRepository bookRepository;
 
     private final BookMapper bookMapper;
 
+    private final EntityManager entityManager;
+
     public BookServiceImpl(BookRepository bookRepository,
-                           BookMapper bookMapper) {
+                           BookMapper bookMapper,
+                           EntityManager entityManager) {
         this.bookRepository = bookRepository;
         this.bookMapper = bookMapper;
+        this.entityManager = entityManager;
     }
 
     @Override
@@ -36,12 +48,30 @@ public class BookServiceImpl implements BookService {
         person.setId(bookDto.getUserId());
         book.setPerson(person);
 
-        log.info("Mapped book: {}", book);
+        log.debug("Mapped book: {}", book);
         Book savedBook = bookRepository.save(book);
-        log.info("Saved book: {}", savedBook);
+        log.info("Saved book: {}", savedBook.getId());
         return bookMapper.bookToBookDto(savedBook);
     }
 
+    @Override
+    public List<BookDto> createBooks(List<BookDto> bookDtoList) {
+        List<Book> books = bookDtoList.stream()
+                .map(bookDto -> {
+                    Book book = bookMapper.bookDtoToBook(bookDto);
+                    Person person = new Person();
+                    person.setId(bookDto.getUserId());
+                    book.setPerson(person);
+                    return book;
+                })
+                .toList();
+
+        List<BookDto> savedBooks = new ArrayList<>(books.size());
+        bookRepository.saveAll(books).forEach(savedBook -> savedBooks.add(bookMapper.bookToBookDto(savedBook)));
+        log.info("Saved books: {}", savedBooks.size());
+        return savedBooks;
+    }
+
     @Override
     public BookDto updateBook(BookDto bookDto) {
         return createBook(bookDto);
@@ -49,11 +79,11 @@ public class BookServiceImpl implements BookService {
 
     @Override
     public BookDto getBookById(Long bookId) {
-        Optional<Book> bookOptional = Optional.of(bookRepository.findById(bookId))
+        Book book = bookRepository.findById(bookId)
                 .orElseThrow(() -> new NotFoundException("Book does not exist in the database"));
-        log.info("Book successfully retrieved from database: {}", bookOptional);
-        BookDto bookDto = bookMapper.bookToBookDto(bookOptional.get());
-        log.info("Mapped book: {}", bookDto);
+        log.info("Book successfully retrieved from database: {}", bookId);
+        BookDto bookDto = bookMapper.bookToBookDto(book);
+        log.debug("Mapped book: {}", bookDto);
         return bookDto;
     }
 
@@ -67,13 +97,60 @@ public class BookServiceImpl implements BookService {
         }
     }
 
+    @Override
+    public void deleteBooksByIds(Long userId, List<Long> bookIds) {
+        if (bookIds.isEmpty()) {
+            return;
+        }
+        int deleted = bookRepository.deleteAllByPersonIdAndIdIn(userId, bookIds);
+        log.info("Books successfully deleted from database: {}", deleted);
+    }
+
     @Override
     public List<BookDto> getBooksByIdUser(Long personId) {
-        return bookRepository.findAllByPersonId(personId)
+        List<BookDto> bookDtoList = bookRepository.findAllByPersonId(personId)
                 .orElse(new ArrayList<>())
                 .stream()
                 .map(bookMapper::bookToBookDto)
-                .peek(mappedBookDto -> log.info("Mapped book: {}", mappedBookDto))
                 .toList();
+        log.info("Books of user {} retrieved from database: {}", personId, bookDtoList.size());
+        return bookDtoList;
+    }
+
+    /**
+     * Каждая книга отсоединяется от контекста сразу после маппинга,
+     * поэтому контекст не растет вместе с библиотекой пользователя.
+     */
+    @Override
+    public void forEachBookByIdUser(Long personId, Consumer<BookDto> action) {
+        try (Stream<Book> books = bookRepository.streamAllByPersonId(personId)) {
+            books.forEach(book -> {
+                BookDto bookDto = bookMapper.bookToBookDto(book);
+                entityManager.detach(book);
+                action.accept(bookDto);
+            });
+        }
+    }
+
+    @Override
+    public List<Long> getBookIdsByIdUserAfter(Long personId, Long afterId, int limit) {
+        return bookRepository.findIdPageByPersonIdAfter(personId, afterId, PageRequest.ofSize(limit));
+    }
+
+    @Override
+    public void deleteBooksByIdUser(Long personId) {
+        int deleted = bookRepository.deleteAllByPersonId(personId);
+        log.info("Books of user {} successfully deleted from database: {}", personId, deleted);
+    }
+
+    @Override
+    public Map<Long, List<Long>> getBookIdsByIdUsers(Collection<Long> personIds) {
+        Map<Long, List<Long>> bookIdsByPerson = new HashMap<>();
+        if (personIds.isEmpty()) {
+            return bookIdsByPerson;
+        }
+        bookRepository.findIdsByPersonIdIn(personIds).forEach(row ->
+                bookIdsByPerson.computeIfAbsent(row.getPersonId(), personId -> new ArrayList<>()).add(row.getId()));
+        return bookIdsByPerson;
     }
 }
@@ -0,0 +1,171 @@
+package ru.grigoriev.service.impl;
+
+import ru.grigoriev.aggregate.BookEntry;
+import ru.grigoriev.aggregate.PersonAggregate;
+import ru.grigoriev.aggregate.PersonAggregateStore;
+import ru.grigoriev.dto.BookDto;
+import ru.grigoriev.exception.NotFoundException;
+import ru.grigoriev.generator.IdAllocator;
+import ru.grigoriev.mapper.BookMapper;
+import ru.grigoriev.repository.PersonAggregateRepository;
+import ru.grigoriev.service.BookService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Книги изменяются только через агрегат пользователя: каждое изменение отмечает агрегат в {@link PersonAggregateStore},
+ * и все книги пользователя записываются одним сохранением агрегата.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "persistence.engine", havingValue = "data-jdbc")
+public class BookServiceImplAggregate implements BookService {
+
+    private final PersonAggregateStore personAggregateStore;
+    private final PersonAggregateRepository personAggregateRepository;
+    private final BookMapper bookMapper;
+    private final IdAllocator idAllocator;
+
+    public BookServiceImplAggregate(PersonAggregateStore personAggregateStore,
+                                    PersonAggregateRepository personAggregateRepository,
+                                    BookMapper bookMapper,
+                                    IdAllocator idAllocator) {
+        this.personAggregateStore = personAggregateStore;
+        this.personAggregateRepository = personAggregateRepository;
+        this.bookMapper = bookMapper;
+        this.idAllocator = idAllocator;
+    }
+
+    @Override
+    public BookDto createBook(BookDto bookDto) {
+        return createBooks(List.of(bookDto)).get(0);
+    }
+
+    @Override
+    public List<BookDto> createBooks(List<BookDto> bookDtoList) {
+        Map<Long, PersonAggregate> users = new LinkedHashMap<>();
+        List<BookDto> savedBooks = new ArrayList<>(bookDtoList.size());
+        for (BookDto bookDto : bookDtoList) {
+            PersonAggregate user = users.computeIfAbsent(bookDto.getUserId(), this::findUser);
+            BookEntry book = bookMapper.bookDtoToBookEntry(bookDto);
+            book.setId(idAllocator.nextId());
+            user.getBooks().add(book);
+            savedBooks.add(bookMapper.bookEntryToBookDto(book, user.getId()));
+        }
+        users.values().forEach(personAggregateStore::save);
+        log.info("Saved books: {}", savedBooks.size());
+        return savedBooks;
+    }
+
+    @Override
+    public BookDto updateBook(BookDto bookDto) {
+        return createBook(bookDto);
+    }
+
+    @Override
+    public BookDto getBookById(Long bookId) {
+        return personAggregateStore.findAllByBookIds(List.of(bookId))
+                .stream()
+                .flatMap(user -> user.getBooks()
+                        .stream()
+                        .filter(book -> bookId.equals(book.getId()))
+                        .map(book -> bookMapper.bookEntryToBookDto(book, user.getId())))
+                .findFirst()
+                .orElseThrow(() -> new NotFoundException("Book does not exist in the database"));
+    }
+
+    @Override
+    public void deleteBookById(Long bookId) {
+        if (removeBooks(List.of(bookId)) == 0) {
+            throw new NotFoundException("Book does not exist in the database");
+        }
+        log.info("Book successfully deleted from database: {}", bookId);
+    }
+
+    @Override
+    public void deleteBooksByIds(Long userId, List<Long> bookIds) {
+        if (bookIds.isEmpty()) {
+            return;
+        }
+        Set<Long> ids = new HashSet<>(bookIds);
+        int removed = personAggregateStore.findById(userId)
+                .map(user -> {
+                    int before = user.getBooks().size();
+                    user.getBooks().removeIf(book -> ids.contains(book.getId()));
+                    personAggregateStore.save(user);
+                    return before - user.getBooks().size();
+                })
+                .orElse(0);
+        log.info("Books successfully deleted from database: {}", removed);
+    }
+
+    @Override
+    public List<BookDto> getBooksByIdUser(Long personId) {
+        List<BookDto> books = new ArrayList<>();
+        forEachBookByIdUser(personId, books::add);
+        return books;
+    }
+
+    /**
+     * Книги уже загружены вместе с агрегатом, поэтому передаются из него без дополнительных запросов.
+     */
+    @Override
+    public void forEachBookByIdUser(Long personId, Consumer<BookDto> action) {
+        personAggregateStore.findById(personId).ifPresent(user -> user.getBooks()
+                .forEach(book -> action.accept(bookMapper.bookEntryToBookDto(book, personId))));
+    }
+
+    @Override
+    public void deleteBooksByIdUser(Long personId) {
+        personAggregateStore.findById(personId).ifPresent(user -> {
+            int deleted = user.getBooks().size();
+            user.getBooks().clear();
+            personAggregateStore.save(user);
+            log.info("Books of user {} successfully deleted from database: {}", personId, deleted);
+        });
+    }
+
+    @Override
+    public Map<Long, List<Long>> getBookIdsByIdUsers(Collection<Long> personIds) {
+        Map<Long, List<Long>> bookIdsByPerson = new HashMap<>();
+        if (personIds.isEmpty()) {
+            return bookIdsByPerson;
+        }
+        personAggregateRepository.findBookIdsByPersonIdIn(personIds).forEach(row ->
+                bookIdsByPerson.computeIfAbsent(row.personId(), personId -> new ArrayList<>()).add(row.id()));
+        return bookIdsByPerson;
+    }
+
+    @Override
+    public List<Long> getBookIdsByIdUserAfter(Long personId, Long afterId, int limit) {
+        return personAggregateRepository.findBookIdPageByPersonIdAfter(personId, afterId, limit);
+    }
+
+    private int removeBooks(Collection<Long> bookIds) {
+        Set<Long> ids = new HashSet<>(bookIds);
+        int removed = 0;
+        for (PersonAggregate user : personAggregateStore.findAllByBookIds(ids)) {
+            int before = user.getBooks().size();
+            user.getBooks().removeIf(book -> ids.contains(book.getId()));
+            removed += before - user.getBooks().size();
+            personAggregateStore.save(user);
+        }
+        return removed;
+    }
+
+    private PersonAggregate findUser(Long userId) {
+        return personAggregateStore.findById(userId)
+                .orElseThrow(() -> new NotFoundException("User does not exist in the database"));
+    }
+}
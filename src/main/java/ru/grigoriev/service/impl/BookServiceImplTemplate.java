@@ -2,32 +2,62 @@ package ru.grigoriev.service.impl;
 
 import ru.grigoriev.dto.BookDto;
 import ru.grigoriev.exception.NotFoundException;
+import ru.grigoriev.generator.IdAllocator;
 import ru.grigoriev.service.BookService;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 @Slf4j
 @Service
+@ConditionalOnProperty(name = "persistence.engine", havingValue = "jdbc")
 public class BookServiceImplTemplate implements BookService {
-    final String INSERT_SQL = "INSERT INTO ulab_edu.book(TITLE, AUTHOR, PAGE_COUNT, id,person_id) VALUES (?,?,?,?,?)";
-    final String GET_BY_ID_SQL = "SELECT * FROM ulab_edu.book WHERE id=?";
-    final String DELETE_SQL = "DELETE FROM ulab_edu.book WHERE id=?";
-    final String GET_BY_ID_USER_SQL = "SELECT * FROM ulab_edu.book WHERE person_id=?";
+    final String INSERT_SQL = "INSERT INTO myschema.book(TITLE, AUTHOR, PAGE_COUNT, id,person_id) VALUES (?,?,?,?,?)";
+    final String GET_BY_ID_SQL = "SELECT * FROM myschema.book WHERE id=?";
+    final String DELETE_SQL = "DELETE FROM myschema.book WHERE id=?";
+    final String GET_BY_ID_USER_SQL = "SELECT * FROM myschema.book WHERE person_id=?";
+    final String DELETE_BY_ID_USER_SQL = "DELETE FROM myschema.book WHERE person_id=?";
+    final String DELETE_BY_ID_USER_AND_ID_SQL = "DELETE FROM myschema.book WHERE person_id=? AND id=?";
+    final String GET_ID_PAGE_BY_ID_USER_SQL = "SELECT id FROM myschema.book WHERE person_id=? AND id > ? ORDER BY id LIMIT ?";
+    final String GET_IDS_BY_ID_USERS_SQL = "SELECT person_id, id FROM myschema.book WHERE person_id = ANY(?) ORDER BY id";
+    final int BATCH_SIZE = 50;
+    final int FETCH_SIZE = 500;
+    /**
+     * BeanPropertyRowMapper не знает, что person_id - это userId, поэтому книги маппятся явно.
+     */
+    final RowMapper<BookDto> BOOK_ROW_MAPPER = (rs, rowNum) -> {
+        BookDto bookDto = new BookDto();
+        bookDto.setId(rs.getLong("id"));
+        bookDto.setUserId(rs.getLong("person_id"));
+        bookDto.setTitle(rs.getString("title"));
+        bookDto.setAuthor(rs.getString("author"));
+        bookDto.setPageCount(rs.getLong("page_count"));
+        bookDto.setVersion(rs.getLong("version"));
+        return bookDto;
+    };
     private final JdbcTemplate jdbcTemplate;
+    private final IdAllocator idAllocator;
 
-    public BookServiceImplTemplate(JdbcTemplate jdbcTemplate) {
+    public BookServiceImplTemplate(JdbcTemplate jdbcTemplate,
+                                   IdAllocator idAllocator) {
         this.jdbcTemplate = jdbcTemplate;
+        this.idAllocator = idAllocator;
     }
 
     @Override
@@ -39,17 +69,33 @@ public class BookServiceImplTemplate implements BookService {
                     ps.setString(1, bookDto.getTitle());
                     ps.setString(2, bookDto.getAuthor());
                     ps.setLong(3, bookDto.getPageCount());
-                    ps.setLong(4, UUID.randomUUID().getMostSignificantBits());
+                    ps.setLong(4, idAllocator.nextId());
                     ps.setLong(5, bookDto.getUserId());
                     return ps;
                 }, keyHolder);
 
         bookDto.setId(Objects.requireNonNull(keyHolder.getKey()).longValue());
-        log.info("New book added to database successfully: {}", bookDto);
+        log.info("New book added to database successfully: {}", bookDto.getId());
 
         return bookDto;
     }
 
+    @Override
+    public List<BookDto> createBooks(List<BookDto> bookDtoList) {
+        bookDtoList.forEach(bookDto -> bookDto.setId(idAllocator.nextId()));
+        jdbcTemplate.batchUpdate(INSERT_SQL, bookDtoList, BATCH_SIZE,
+                (ps, bookDto) -> {
+                    ps.setString(1, bookDto.getTitle());
+                    ps.setString(2, bookDto.getAuthor());
+                    ps.setLong(3, bookDto.getPageCount());
+                    ps.setLong(4, bookDto.getId());
+                    ps.setLong(5, bookDto.getUserId());
+                });
+        log.info("New books added to database successfully: {}", bookDtoList.size());
+
+        return bookDtoList;
+    }
+
     @Override
     public BookDto updateBook(BookDto bookDto) {
         return createBook(bookDto);
@@ -57,11 +103,11 @@ public class BookServiceImplTemplate implements BookService {
 
     @Override
     public BookDto getBookById(Long bookId) {
-        Optional<BookDto> bookDto = Optional.ofNullable(jdbcTemplate.query(GET_BY_ID_SQL, new BeanPropertyRowMapper<>(BookDto.class), bookId)
+        Optional<BookDto> bookDto = Optional.ofNullable(jdbcTemplate.query(GET_BY_ID_SQL, BOOK_ROW_MAPPER, bookId)
                 .stream()
                 .findFirst()
                 .orElseThrow(() -> new NotFoundException("Book does not exist in the database")));
-        log.info("Book successfully retrieved from database: {}", bookDto);
+        log.info("Book successfully retrieved from database: {}", bookId);
         return bookDto.get();
     }
 
@@ -77,8 +123,59 @@ public class BookServiceImplTemplate implements BookService {
                 });
     }
 
+    @Override
+    public void deleteBooksByIds(Long userId, List<Long> bookIds) {
+        jdbcTemplate.batchUpdate(DELETE_BY_ID_USER_AND_ID_SQL, bookIds, BATCH_SIZE,
+                (ps, bookId) -> {
+                    ps.setLong(1, userId);
+                    ps.setLong(2, bookId);
+                });
+        log.info("Books successfully deleted from database: {}", bookIds.size());
+    }
+
     @Override
     public List<BookDto> getBooksByIdUser(Long personId) {
-        return jdbcTemplate.query(GET_BY_ID_USER_SQL, new BeanPropertyRowMapper<>(BookDto.class), personId);
+        return jdbcTemplate.query(GET_BY_ID_USER_SQL, BOOK_ROW_MAPPER, personId);
+    }
+
+    @Override
+    public void forEachBookByIdUser(Long personId, Consumer<BookDto> action) {
+        jdbcTemplate.query(
+                connection -> {
+                    PreparedStatement ps = connection.prepareStatement(GET_BY_ID_USER_SQL);
+                    ps.setFetchSize(FETCH_SIZE);
+                    ps.setLong(1, personId);
+                    return ps;
+                },
+                (RowCallbackHandler) rs -> action.accept(BOOK_ROW_MAPPER.mapRow(rs, rs.getRow())));
+    }
+
+    @Override
+    public List<Long> getBookIdsByIdUserAfter(Long personId, Long afterId, int limit) {
+        return jdbcTemplate.queryForList(GET_ID_PAGE_BY_ID_USER_SQL, Long.class, personId, afterId, limit);
+    }
+
+    @Override
+    public void deleteBooksByIdUser(Long personId) {
+        int deleted = jdbcTemplate.update(DELETE_BY_ID_USER_SQL, personId);
+        log.info("Books of user {} successfully deleted from database: {}", personId, deleted);
+    }
+
+    @Override
+    public Map<Long, List<Long>> getBookIdsByIdUsers(Collection<Long> personIds) {
+        Map<Long, List<Long>> bookIdsByPerson = new HashMap<>();
+        if (personIds.isEmpty()) {
+            return bookIdsByPerson;
+        }
+        jdbcTemplate.query(
+                connection -> {
+                    PreparedStatement ps = connection.prepareStatement(GET_IDS_BY_ID_USERS_SQL);
+                    ps.setArray(1, connection.createArrayOf("bigint", personIds.toArray()));
+                    return ps;
+                },
+                (RowCallbackHandler) rs -> bookIdsByPerson
+                        .computeIfAbsent(rs.getLong("person_id"), personId -> new ArrayList<>())
+                        .add(rs.getLong("id")));
+        return bookIdsByPerson;
     }
 }
@@ -0,0 +1,101 @@
+package ru.grigoriev.service.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.grigoriev.service.UserBookExportService;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Выгрузка пользователей с id их книг в NDJSON.
+ * Строки читаются серверным курсором PostgreSQL (read-only транзакция и fetch size)
+ * и сразу пишутся в поток, поэтому расход памяти не зависит от размера таблиц.
+ */
+@Slf4j
+@Service
+public class UserBookExportServiceImpl implements UserBookExportService {
+    final String EXPORT_SQL = "SELECT p.id AS person_id, b.id AS book_id FROM myschema.person p " +
+            "LEFT JOIN myschema.book b ON b.person_id = p.id ORDER BY p.id, b.id";
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    public UserBookExportServiceImpl(DataSource dataSource,
+                                     PlatformTransactionManager transactionManager,
+                                     ObjectMapper objectMapper,
+                                     @Value("${user-export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public long exportUsersWithBooks(OutputStream outputStream) {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            UserBookNdjsonWriter writer = new UserBookNdjsonWriter(generator);
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(EXPORT_SQL, writer));
+            writer.finish();
+            log.info("Users successfully exported: {}", writer.usersWritten);
+            return writer.usersWritten;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class UserBookNdjsonWriter implements RowCallbackHandler {
+        private final JsonGenerator generator;
+        private Long currentPersonId;
+        private long usersWritten;
+
+        UserBookNdjsonWriter(JsonGenerator generator) {
+            this.generator = generator;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            try {
+                long personId = rs.getLong("person_id");
+                if (currentPersonId == null || currentPersonId != personId) {
+                    finish();
+                    currentPersonId = personId;
+                    generator.writeStartObject();
+                    generator.writeNumberField("userId", personId);
+                    generator.writeArrayFieldStart("booksIdList");
+                }
+                long bookId = rs.getLong("book_id");
+                if (!rs.wasNull()) {
+                    generator.writeNumber(bookId);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void finish() throws IOException {
+            if (currentPersonId == null) {
+                return;
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            currentPersonId = null;
+            usersWritten++;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package ru.grigoriev.service.impl;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.grigoriev.dto.BookDto;
+import ru.grigoriev.dto.ImportStatusDto;
+import ru.grigoriev.dto.UserDto;
+import ru.grigoriev.exception.NotFoundException;
+import ru.grigoriev.generator.IdAllocator;
+import ru.grigoriev.mapper.BookMapper;
+import ru.grigoriev.mapper.UserMapper;
+import ru.grigoriev.service.UserBookImportService;
+import ru.grigoriev.web.request.UserBookRequest;
+import ru.grigoriev.web.request.UserRequest;
+
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Загрузка пользователей с книгами из NDJSON через PostgreSQL COPY.
+ * Запись проверяется по ограничениям {@link UserDto} и {@link BookDto}, как запросы API, и при нарушении
+ * отклоняется одна, а не вместе с порцией на ошибке COPY.
+ * Записи читаются потоково и копируются порциями по {@code chunkSize} пользователей,
+ * каждая порция фиксируется отдельной транзакцией. Id выдает общий {@link IdAllocator}.
+ * Порция копируется во временные таблицы и переносится в myschema.person через ON CONFLICT DO NOTHING:
+ * пользователь с уже занятой должностью (уникальный индекс) отклоняется один, с его книгами, остальные загружаются.
+ */
+@Slf4j
+@Service
+public class UserBookImportServiceImpl implements UserBookImportService {
+    final String CREATE_IMPORT_PERSON_SQL = "CREATE TEMPORARY TABLE IF NOT EXISTS import_person " +
+            "(id BIGINT, full_name VARCHAR(50), title VARCHAR(50), age INTEGER) ON COMMIT DELETE ROWS";
+    final String CREATE_IMPORT_BOOK_SQL = "CREATE TEMPORARY TABLE IF NOT EXISTS import_book " +
+            "(id BIGINT, person_id BIGINT, title VARCHAR(50), author VARCHAR(50), page_count INTEGER) ON COMMIT DELETE ROWS";
+    final String COPY_PERSON_SQL = "COPY import_person (id, full_name, title, age) FROM STDIN WITH (FORMAT csv)";
+    final String COPY_BOOK_SQL = "COPY import_book (id, person_id, title, author, page_count) FROM STDIN WITH (FORMAT csv)";
+    final String INSERT_PERSON_SQL = "INSERT INTO myschema.person (id, full_name, title, age) " +
+            "SELECT id, full_name, title, age FROM import_person ORDER BY id ON CONFLICT DO NOTHING RETURNING id";
+    final String INSERT_BOOK_SQL = "INSERT INTO myschema.book (id, person_id, title, author, page_count) " +
+            "SELECT id, person_id, title, author, page_count FROM import_book WHERE person_id = ANY(?)";
+    final int STATUS_HISTORY_SIZE = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IdAllocator idAllocator;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final UserMapper userMapper;
+    private final BookMapper bookMapper;
+    private final int chunkSize;
+    private final Map<String, ImportProgress> imports = Collections.synchronizedMap(
+            new LinkedHashMap<>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ImportProgress> eldest) {
+                    return size() > STATUS_HISTORY_SIZE;
+                }
+            });
+
+    public UserBookImportServiceImpl(JdbcTemplate jdbcTemplate,
+                                     IdAllocator idAllocator,
+                                     TransactionTemplate transactionTemplate,
+                                     ObjectMapper objectMapper,
+                                     Validator validator,
+                                     UserMapper userMapper,
+                                     BookMapper bookMapper,
+                                     @Value("${user-import.chunk-size:1000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.idAllocator = idAllocator;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.userMapper = userMapper;
+        this.bookMapper = bookMapper;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    @Override
+    public ImportStatusDto importUsersWithBooks(String importId, InputStream ndjson) {
+        ImportProgress progress = new ImportProgress(importId);
+        if (imports.putIfAbsent(importId, progress) != null) {
+            throw new IllegalStateException("Import " + importId + " already exists");
+        }
+        log.info("Import {} started", importId);
+
+        try (MappingIterator<UserBookRequest> records = objectMapper.readerFor(UserBookRequest.class).readValues(ndjson)) {
+            List<UserBookRequest> chunk = new ArrayList<>(chunkSize);
+            while (records.hasNextValue()) {
+                UserBookRequest record = records.nextValue();
+                if (isValid(record)) {
+                    chunk.add(record);
+                } else {
+                    progress.recordsRejected++;
+                }
+                if (chunk.size() == chunkSize) {
+                    copyChunk(chunk, progress);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                copyChunk(chunk, progress);
+            }
+            progress.finish(ImportStatusDto.ImportState.COMPLETED);
+        } catch (IOException | RuntimeException e) {
+            progress.lastError = e.getMessage();
+            progress.finish(ImportStatusDto.ImportState.FAILED);
+        }
+        log.info("Import {} finished: {}", importId, progress.toDto());
+        return progress.toDto();
+    }
+
+    @Override
+    public ImportStatusDto getImportStatus(String importId) {
+        return Optional.ofNullable(imports.get(importId))
+                .map(ImportProgress::toDto)
+                .orElseThrow(() -> new NotFoundException("Import does not exist"));
+    }
+
+    private void copyChunk(List<UserBookRequest> chunk, ImportProgress progress) {
+        try {
+            ChunkResult result = transactionTemplate.execute(status -> {
+                Map<Long, UserBookRequest> records = new LinkedHashMap<>();
+                StringBuilder persons = new StringBuilder();
+                StringBuilder books = new StringBuilder();
+                for (UserBookRequest record : chunk) {
+                    long personId = idAllocator.nextId();
+                    records.put(personId, record);
+                    UserRequest userRequest = record.getUserRequest();
+                    appendCsvRow(persons, personId, userRequest.getFullName(), userRequest.getTitle(), userRequest.getAge());
+                    record.getBookRequests().stream()
+                            .filter(Objects::nonNull)
+                            .forEach(bookRequest -> appendCsvRow(books, idAllocator.nextId(), personId,
+                                    bookRequest.getTitle(), bookRequest.getAuthor(), bookRequest.getPageCount()));
+                }
+                jdbcTemplate.execute(CREATE_IMPORT_PERSON_SQL);
+                jdbcTemplate.execute(CREATE_IMPORT_BOOK_SQL);
+                jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                    CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+                    try {
+                        copyManager.copyIn(COPY_PERSON_SQL, new StringReader(persons.toString()));
+                        copyManager.copyIn(COPY_BOOK_SQL, new StringReader(books.toString()));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return null;
+                });
+                List<Long> insertedIds = jdbcTemplate.queryForList(INSERT_PERSON_SQL, Long.class);
+                int insertedBooks = jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+                    try (PreparedStatement ps = connection.prepareStatement(INSERT_BOOK_SQL)) {
+                        ps.setArray(1, connection.createArrayOf("bigint", insertedIds.toArray()));
+                        return ps.executeUpdate();
+                    }
+                });
+                insertedIds.forEach(records::remove);
+                return new ChunkResult(insertedIds.size(), insertedBooks, records.values());
+            });
+            progress.usersImported += result.users();
+            progress.booksImported += result.books();
+            progress.recordsRejected += result.conflicts().size();
+            for (UserBookRequest conflict : result.conflicts()) {
+                log.warn("Import {} rejected user with existing title: {}", progress.importId, conflict.getUserRequest().getTitle());
+                progress.lastError = "User title already exists: " + conflict.getUserRequest().getTitle();
+            }
+        } catch (RuntimeException e) {
+            log.error("Import {} chunk of {} users rolled back: {}", progress.importId, chunk.size(), e.getMessage());
+            progress.chunksFailed++;
+            progress.lastError = e.getMessage();
+        }
+    }
+
+    private boolean isValid(UserBookRequest record) {
+        if (record == null || record.getBookRequests() == null) {
+            return false;
+        }
+        UserRequest userRequest = record.getUserRequest();
+        if (userRequest == null) {
+            return false;
+        }
+        return validator.validate(userMapper.userRequestToUserDto(userRequest)).isEmpty()
+                && record.getBookRequests().stream()
+                .filter(Objects::nonNull)
+                .allMatch(bookRequest -> validator.validate(bookMapper.bookRequestToBookDto(bookRequest)).isEmpty());
+    }
+
+    private void appendCsvRow(StringBuilder csv, Object... values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                csv.append(',');
+            }
+            if (values[i] instanceof String value) {
+                csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+            } else {
+                csv.append(values[i]);
+            }
+        }
+        csv.append('\n');
+    }
+
+    /**
+     * Записи порции, не вставленные из-за конфликта уникальности, вместе с их книгами.
+     */
+    private record ChunkResult(int users, int books, Collection<UserBookRequest> conflicts) {
+    }
+
+    private static class ImportProgress {
+        private final String importId;
+        private final Instant startedAt = Instant.now();
+        private volatile ImportStatusDto.ImportState state = ImportStatusDto.ImportState.RUNNING;
+        private volatile long usersImported;
+        private volatile long booksImported;
+        private volatile long recordsRejected;
+        private volatile long chunksFailed;
+        private volatile String lastError;
+        private volatile Instant finishedAt;
+
+        ImportProgress(String importId) {
+            this.importId = importId;
+        }
+
+        void finish(ImportStatusDto.ImportState state) {
+            this.finishedAt = Instant.now();
+            this.state = state;
+        }
+
+        ImportStatusDto toDto() {
+            return ImportStatusDto.builder()
+                    .importId(importId)
+                    .state(state)
+                    .usersImported(usersImported)
+                    .booksImported(booksImported)
+                    .recordsRejected(recordsRejected)
+                    .chunksFailed(chunksFailed)
+                    .lastError(lastError)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .build();
+        }
+    }
+}
@@ -7,38 +7,54 @@ import ru.grigoriev.mapper.UserMapper;
 import ru.grigoriev.repository.UserRepository;
 import ru.grigoriev.service.UserService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @Slf4j
 @Service
+@ConditionalOnProperty(name = "persistence.engine", havingValue = "jpa", matchIfMissing = true)
 public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
     private final UserMapper userMapper;
+    private final EntityManager entityManager;
 
     public UserServiceImpl(UserRepository userRepository,
-                           UserMapper userMapper) {
+                           UserMapper userMapper,
+                           EntityManager entityManager) {
         this.userRepository = userRepository;
         this.userMapper = userMapper;
+        this.entityManager = entityManager;
     }
 
     @Override
     public UserDto createUser(UserDto userDto) {
         Person user = userMapper.userDtoToPerson(userDto);
-        log.info("Mapped user: {}", user);
+        log.debug("Mapped user: {}", user);
         Person savedUser = userRepository.save(user);
-        log.info("Saved user: {}", savedUser);
+        log.info("Saved user: {}", savedUser.getId());
         return userMapper.personToUserDto(savedUser);
     }
 
+    /**
+     * Версия из {@code userDto} сверяется при слиянии и при фиксации транзакции.
+     * Версия увеличивается даже без изменения полей пользователя: она защищает и его книги.
+     */
     @Override
     public UserDto updateUser(UserDto userDto) {
         Person user = userMapper.userDtoToPerson(userDto);
-        log.info("Mapped user: {}", user);
+        log.debug("Mapped user: {}", user);
         Person updateUser = userRepository.save(user);
-        log.info("New user updated to database successfully: {}", userDto);
+        entityManager.lock(updateUser, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+        log.info("New user updated to database successfully: {}", userDto.getId());
         return userMapper.personToUserDto(updateUser);
     }
 
@@ -46,13 +62,51 @@ public class UserServiceImpl implements UserService {
     public UserDto getUserById(Long userId) {
         Optional<Person> user = Optional.ofNullable(userRepository.findById(userId)
                 .orElseThrow(() -> new NotFoundException("User does not exist in the database")));
-        log.info("User successfully retrieved from database: {}", user);
+        log.info("User successfully retrieved from database: {}", userId);
 
         UserDto userDto = userMapper.personToUserDto(user.get());
-        log.info("Mapped user: {}", user);
+        log.debug("Mapped user: {}", userDto);
         return userDto;
     }
 
+    @Override
+    public long getUserVersion(Long userId) {
+        return userRepository.findVersionById(userId)
+                .orElseThrow(() -> new NotFoundException("User does not exist in the database"));
+    }
+
+    @Override
+    public long[] getBookIdsByIdUser(Long userId) {
+        List<Long> bookIds = userRepository.findBookIdsById(userId);
+        if (bookIds.isEmpty()) {
+            throw new NotFoundException("User does not exist in the database");
+        }
+        log.info("User book ids successfully retrieved from database: {}", userId);
+        return bookIds.stream()
+                .filter(Objects::nonNull)
+                .mapToLong(Long::longValue)
+                .toArray();
+    }
+
+    @Override
+    public List<UserDto> getUsersByIds(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return List.of();
+        }
+        return userRepository.findAllByIdIn(userIds)
+                .stream()
+                .map(userMapper::personToUserDto)
+                .toList();
+    }
+
+    @Override
+    public List<UserDto> getUsersAfter(Long afterId, int limit) {
+        return userRepository.findPageAfter(afterId, PageRequest.ofSize(limit))
+                .stream()
+                .map(userMapper::personToUserDto)
+                .toList();
+    }
+
     @Override
     public void deleteUserById(Long userId) {
         try {
@@ -0,0 +1,126 @@
+package ru.grigoriev.service.impl;
+
+import ru.grigoriev.aggregate.BookEntry;
+import ru.grigoriev.aggregate.PersonAggregate;
+import ru.grigoriev.aggregate.PersonAggregateStore;
+import ru.grigoriev.dto.UserDto;
+import ru.grigoriev.exception.NotFoundException;
+import ru.grigoriev.generator.IdAllocator;
+import ru.grigoriev.mapper.UserMapper;
+import ru.grigoriev.repository.PersonAggregateRepository;
+import ru.grigoriev.service.UserService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Пользователь хранится агрегатом Spring Data JDBC вместе с книгами, см. {@link PersonAggregateStore}.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "persistence.engine", havingValue = "data-jdbc")
+public class UserServiceImplAggregate implements UserService {
+
+    private final PersonAggregateStore personAggregateStore;
+    private final PersonAggregateRepository personAggregateRepository;
+    private final UserMapper userMapper;
+    private final IdAllocator idAllocator;
+
+    public UserServiceImplAggregate(PersonAggregateStore personAggregateStore,
+                                    PersonAggregateRepository personAggregateRepository,
+                                    UserMapper userMapper,
+                                    IdAllocator idAllocator) {
+        this.personAggregateStore = personAggregateStore;
+        this.personAggregateRepository = personAggregateRepository;
+        this.userMapper = userMapper;
+        this.idAllocator = idAllocator;
+    }
+
+    /**
+     * Id выдается сразу, а строка вставляется вместе с книгами при фиксации транзакции.
+     */
+    @Override
+    public UserDto createUser(UserDto userDto) {
+        PersonAggregate user = userMapper.userDtoToPersonAggregate(userDto);
+        user.setId(idAllocator.nextId());
+        user.setVersion(null);
+        personAggregateStore.save(user);
+        log.info("New user added to database successfully: {}", user.getId());
+        return userMapper.personAggregateToUserDto(user);
+    }
+
+    /**
+     * Версия из {@code userDto} сверяется с прочитанным агрегатом, а затем еще раз в UPDATE при записи агрегата.
+     */
+    @Override
+    public UserDto updateUser(UserDto userDto) {
+        PersonAggregate user = personAggregateStore.findById(userDto.getId())
+                .filter(aggregate -> Objects.equals(aggregate.getVersion(), userDto.getVersion()))
+                .orElseThrow(() -> new OptimisticLockingFailureException(
+                        "User was updated concurrently or does not exist: " + userDto.getId()));
+        userMapper.updatePersonAggregate(userDto, user);
+        personAggregateStore.save(user);
+        userDto.setVersion(userDto.getVersion() + 1);
+        log.info("New user updated to database successfully: {}", userDto.getId());
+        return userDto;
+    }
+
+    @Override
+    public UserDto getUserById(Long userId) {
+        PersonAggregate user = findUser(userId);
+        log.info("User successfully retrieved from database: {}", userId);
+        return userMapper.personAggregateToUserDto(user);
+    }
+
+    @Override
+    public long getUserVersion(Long userId) {
+        return personAggregateRepository.findVersionById(userId)
+                .orElseThrow(() -> new NotFoundException("User does not exist in the database"));
+    }
+
+    @Override
+    public long[] getBookIdsByIdUser(Long userId) {
+        long[] bookIds = findUser(userId).getBooks()
+                .stream()
+                .mapToLong(BookEntry::getId)
+                .sorted()
+                .toArray();
+        log.info("User book ids successfully retrieved from database: {}", userId);
+        return bookIds;
+    }
+
+    @Override
+    public List<UserDto> getUsersByIds(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return List.of();
+        }
+        return personAggregateRepository.findSummariesByIdIn(userIds)
+                .stream()
+                .map(userMapper::personSummaryToUserDto)
+                .toList();
+    }
+
+    @Override
+    public List<UserDto> getUsersAfter(Long afterId, int limit) {
+        return personAggregateRepository.findSummaryPageAfter(afterId, limit)
+                .stream()
+                .map(userMapper::personSummaryToUserDto)
+                .toList();
+    }
+
+    @Override
+    public void deleteUserById(Long userId) {
+        personAggregateStore.deleteById(findUser(userId).getId());
+        log.info("User successfully deleted from database: {}", userId);
+    }
+
+    private PersonAggregate findUser(Long userId) {
+        return personAggregateStore.findById(userId)
+                .orElseThrow(() -> new NotFoundException("User does not exist in the database"));
+    }
+}
@@ -2,31 +2,45 @@ package ru.grigoriev.service.impl;
 
 import ru.grigoriev.dto.UserDto;
 import ru.grigoriev.exception.NotFoundException;
+import ru.grigoriev.generator.IdAllocator;
 import ru.grigoriev.service.UserService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import java.sql.PreparedStatement;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.UUID;
 import java.util.stream.Stream;
 
 @Slf4j
 @Service
+@ConditionalOnProperty(name = "persistence.engine", havingValue = "jdbc")
 public class UserServiceImplTemplate implements UserService {
-    final String INSERT_SQL = "INSERT INTO ulab_edu.person(id, full_name, title, age) VALUES (?,?,?,?)";
-    final String UPDATE_SQL = "UPDATE ulab_edu.person SET full_name=?,title=?,age=? WHERE id =?";
-    final String GET_SQL = "SELECT * FROM ulab_edu.person WHERE id=?";
-    final String DELETE_SQL = "DELETE FROM ulab_edu.person WHERE id=?";
+    final String INSERT_SQL = "INSERT INTO myschema.person(id, full_name, title, age) VALUES (?,?,?,?)";
+    final String UPDATE_SQL = "UPDATE myschema.person SET full_name=?,title=?,age=?,version=version+1 WHERE id =? AND version=?";
+    final String GET_SQL = "SELECT * FROM myschema.person WHERE id=?";
+    final String GET_VERSION_SQL = "SELECT version FROM myschema.person WHERE id=?";
+    final String DELETE_SQL = "DELETE FROM myschema.person WHERE id=?";
+    final String GET_BOOK_IDS_SQL = "SELECT p.id AS person_id, b.id AS book_id FROM myschema.person p " +
+            "LEFT JOIN myschema.book b ON b.person_id = p.id WHERE p.id=? ORDER BY b.id";
+    final String GET_BY_IDS_SQL = "SELECT * FROM myschema.person WHERE id = ANY(?)";
+    final String GET_PAGE_AFTER_SQL = "SELECT * FROM myschema.person WHERE id > ? ORDER BY id LIMIT ?";
     private final JdbcTemplate jdbcTemplate;
+    private final IdAllocator idAllocator;
 
-    public UserServiceImplTemplate(JdbcTemplate jdbcTemplate) {
+    public UserServiceImplTemplate(JdbcTemplate jdbcTemplate,
+                                   IdAllocator idAllocator) {
         this.jdbcTemplate = jdbcTemplate;
+        this.idAllocator = idAllocator;
     }
 
     @Override
@@ -36,7 +50,7 @@ public class UserServiceImplTemplate implements UserService {
         jdbcTemplate.update(
                 connection -> {
                     PreparedStatement ps = connection.prepareStatement(INSERT_SQL, new String[]{"id"});
-                    ps.setLong(1, UUID.randomUUID().getMostSignificantBits());
+                    ps.setLong(1, idAllocator.nextId());
                     ps.setString(2, userDto.getFullName());
                     ps.setString(3, userDto.getTitle());
                     ps.setLong(4, userDto.getAge());
@@ -44,15 +58,19 @@ public class UserServiceImplTemplate implements UserService {
                 }, keyHolder);
 
         userDto.setId(Objects.requireNonNull(keyHolder.getKey()).longValue());
-        log.info("New user added to database successfully: {}", userDto);
+        log.info("New user added to database successfully: {}", userDto.getId());
         return userDto;
     }
 
     @Override
     public UserDto updateUser(UserDto userDto) {
-        jdbcTemplate.update(UPDATE_SQL,
-                userDto.getFullName(), userDto.getTitle(), userDto.getAge(), userDto.getId());
-        log.info("New user updated to database successfully: {}", userDto);
+        int updated = jdbcTemplate.update(UPDATE_SQL,
+                userDto.getFullName(), userDto.getTitle(), userDto.getAge(), userDto.getId(), userDto.getVersion());
+        if (updated == 0) {
+            throw new OptimisticLockingFailureException("User was updated concurrently or does not exist: " + userDto.getId());
+        }
+        userDto.setVersion(userDto.getVersion() + 1);
+        log.info("New user updated to database successfully: {}", userDto.getId());
 
         return userDto;
     }
@@ -63,10 +81,60 @@ public class UserServiceImplTemplate implements UserService {
                 .stream()
                 .findFirst()
                 .orElseThrow(() -> new NotFoundException("User does not exist in the database")));
-        log.info("User successfully retrieved from database: {}", userDto);
+        log.info("User successfully retrieved from database: {}", userId);
         return userDto.get();
     }
 
+    @Override
+    public long getUserVersion(Long userId) {
+        return jdbcTemplate.queryForList(GET_VERSION_SQL, Long.class, userId)
+                .stream()
+                .findFirst()
+                .orElseThrow(() -> new NotFoundException("User does not exist in the database"));
+    }
+
+    @Override
+    public long[] getBookIdsByIdUser(Long userId) {
+        long[] bookIds = jdbcTemplate.query(GET_BOOK_IDS_SQL, rs -> {
+            if (!rs.next()) {
+                throw new NotFoundException("User does not exist in the database");
+            }
+            long[] ids = new long[16];
+            int count = 0;
+            do {
+                long bookId = rs.getLong("book_id");
+                if (!rs.wasNull()) {
+                    if (count == ids.length) {
+                        ids = Arrays.copyOf(ids, count * 2);
+                    }
+                    ids[count++] = bookId;
+                }
+            } while (rs.next());
+            return Arrays.copyOf(ids, count);
+        }, userId);
+        log.info("User book ids successfully retrieved from database: {}", userId);
+        return bookIds;
+    }
+
+    @Override
+    public List<UserDto> getUsersByIds(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(
+                connection -> {
+                    PreparedStatement ps = connection.prepareStatement(GET_BY_IDS_SQL);
+                    ps.setArray(1, connection.createArrayOf("bigint", userIds.toArray()));
+                    return ps;
+                },
+                new BeanPropertyRowMapper<>(UserDto.class));
+    }
+
+    @Override
+    public List<UserDto> getUsersAfter(Long afterId, int limit) {
+        return jdbcTemplate.query(GET_PAGE_AFTER_SQL, new BeanPropertyRowMapper<>(UserDto.class), afterId, limit);
+    }
+
     @Override
     public void deleteUserById(Long userId) {
         Stream.of(userId)
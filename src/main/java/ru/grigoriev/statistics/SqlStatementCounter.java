@@ -0,0 +1,39 @@
+package ru.grigoriev.statistics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Счетчик SQL-запросов текущего HTTP-запроса. Счетчик привязан к потоку, обрабатывающему запрос,
+ * а не к requestId из заголовка: запросы с одинаковым rqid (повторы клиента) считаются раздельно.
+ * Запросы вне HTTP-запроса (фоновые задачи, async-потоки) не считаются.
+ */
+@Component
+public class SqlStatementCounter {
+    public static final String REQUEST_ID = "requestId";
+
+    private final ThreadLocal<AtomicInteger> counter = new ThreadLocal<>();
+
+    public void start() {
+        counter.set(new AtomicInteger());
+    }
+
+    public void increment() {
+        AtomicInteger current = counter.get();
+        if (current != null) {
+            current.incrementAndGet();
+        }
+    }
+
+    public int current() {
+        AtomicInteger current = counter.get();
+        return current == null ? 0 : current.get();
+    }
+
+    public int finish() {
+        int count = current();
+        counter.remove();
+        return count;
+    }
+}
@@ -0,0 +1,20 @@
+package ru.grigoriev.statistics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Считает каждый запрос, подготовленный Hibernate. Пакет batch-вставок считается одним запросом.
+ */
+public class SqlStatementCountingInspector implements StatementInspector {
+    private final SqlStatementCounter counter;
+
+    public SqlStatementCountingInspector(SqlStatementCounter counter) {
+        this.counter = counter;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        counter.increment();
+        return sql;
+    }
+}
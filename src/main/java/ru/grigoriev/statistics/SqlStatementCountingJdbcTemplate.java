@@ -0,0 +1,26 @@
+package ru.grigoriev.statistics;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * {@link JdbcTemplate}, считающий каждый созданный им Statement.
+ * Запросы внутри ConnectionCallback (COPY, createArrayOf) шаблон не видит и не считает.
+ */
+public class SqlStatementCountingJdbcTemplate extends JdbcTemplate {
+    private final SqlStatementCounter counter;
+
+    public SqlStatementCountingJdbcTemplate(DataSource dataSource, SqlStatementCounter counter) {
+        super(dataSource);
+        this.counter = counter;
+    }
+
+    @Override
+    protected void applyStatementSettings(Statement stmt) throws SQLException {
+        super.applyStatementSettings(stmt);
+        counter.increment();
+    }
+}
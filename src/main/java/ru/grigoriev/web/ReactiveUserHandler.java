@@ -0,0 +1,124 @@
+package ru.grigoriev.web;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import ru.grigoriev.exception.NotFoundException;
+import ru.grigoriev.facade.ReactiveUserDataFacade;
+import ru.grigoriev.web.handler.ExceptionHandlerUtils;
+import ru.grigoriev.web.request.UserBookRequest;
+import ru.grigoriev.web.response.BaseWebResponse;
+import ru.grigoriev.web.response.UserBookResponse;
+
+import javax.validation.ConstraintViolationException;
+
+import static ru.grigoriev.web.constant.WebConstant.REQUEST_ID_PATTERN;
+import static ru.grigoriev.web.constant.WebConstant.RQID;
+
+/**
+ * Обработчики маршрутов профиля reactive, см. {@link ru.grigoriev.config.ReactiveConfig}.
+ * Пути, заголовок rqid и коды ошибок совпадают с {@link UserController} и
+ * {@link ru.grigoriev.web.handler.ControllerExceptionHandler}.
+ */
+@Slf4j
+@Component
+@Profile("reactive")
+public class ReactiveUserHandler {
+    private final ReactiveUserDataFacade reactiveUserDataFacade;
+
+    public ReactiveUserHandler(ReactiveUserDataFacade reactiveUserDataFacade) {
+        this.reactiveUserDataFacade = reactiveUserDataFacade;
+    }
+
+    public Mono<ServerResponse> createUserWithBooks(ServerRequest request) {
+        String requestId = request.headers().firstHeader(RQID);
+        if (requestId == null || !requestId.matches(REQUEST_ID_PATTERN)) {
+            return errorResponse(HttpStatus.BAD_REQUEST, "Header " + RQID + " is missing or invalid");
+        }
+        return body(request)
+                .flatMap(reactiveUserDataFacade::createUserWithBooks)
+                .doOnNext(response -> log.info("Response with created user {} and his books: {}",
+                        response.getUserId(), response.getBooksIdList().length))
+                .flatMap(this::okResponse)
+                .onErrorResume(this::handleError);
+    }
+
+    public Mono<ServerResponse> updateUserWithBooks(ServerRequest request) {
+        return userId(request)
+                .flatMap(userId -> body(request)
+                        .flatMap(body -> reactiveUserDataFacade.updateUserWithBooks(userId, body)))
+                .doOnNext(response -> log.info("Response with updated user {} and his books: {}",
+                        response.getUserId(), response.getBooksIdList().length))
+                .flatMap(this::okResponse)
+                .onErrorResume(this::handleError);
+    }
+
+    public Mono<ServerResponse> getUserWithBooks(ServerRequest request) {
+        return userId(request)
+                .flatMap(reactiveUserDataFacade::getUserWithBooks)
+                .doOnNext(response -> log.info("Response with user {} and his books: {}",
+                        response.getUserId(), response.getBooksIdList().length))
+                .flatMap(this::okResponse)
+                .onErrorResume(this::handleError);
+    }
+
+    public Mono<ServerResponse> deleteUserWithBooks(ServerRequest request) {
+        return userId(request)
+                .doOnNext(userId -> log.info("Delete user and his books:  userId {}", userId))
+                .flatMap(userId -> reactiveUserDataFacade.deleteUserWithBooks(userId)
+                        .then(ServerResponse.ok().build()))
+                .onErrorResume(this::handleError);
+    }
+
+    /**
+     * Нечисловой id - 400, как несовпадение типа параметра пути у {@link UserController}.
+     */
+    private Mono<Long> userId(ServerRequest request) {
+        String userId = request.pathVariable("userId");
+        return Mono.fromCallable(() -> Long.valueOf(userId))
+                .onErrorMap(NumberFormatException.class,
+                        e -> new NotFoundException("The request is invalid, userId is not a number: " + userId));
+    }
+
+    /**
+     * Пустое тело - 400, как обязательное тело запроса у {@link UserController}.
+     */
+    private Mono<UserBookRequest> body(ServerRequest request) {
+        return request.bodyToMono(UserBookRequest.class)
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("The request is invalid, the request body is missing")));
+    }
+
+    private Mono<ServerResponse> okResponse(UserBookResponse response) {
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(response);
+    }
+
+    private Mono<ServerResponse> handleError(Throwable exc) {
+        if (exc instanceof NotFoundException || exc instanceof ConstraintViolationException) {
+            return errorResponse(HttpStatus.BAD_REQUEST, exc);
+        }
+        if (exc instanceof OptimisticLockingFailureException) {
+            return errorResponse(HttpStatus.CONFLICT, exc);
+        }
+        return Mono.error(exc);
+    }
+
+    private Mono<ServerResponse> errorResponse(HttpStatus status, Throwable exc) {
+        log.error(ExceptionHandlerUtils.buildErrorMessage(exc));
+        return errorResponse(status, exc.getMessage());
+    }
+
+    private Mono<ServerResponse> errorResponse(HttpStatus status, String message) {
+        log.error(message);
+        return ServerResponse.status(status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new BaseWebResponse(message));
+    }
+}
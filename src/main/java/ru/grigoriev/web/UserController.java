@@ -3,23 +3,40 @@ package ru.grigoriev.web;
 import ru.grigoriev.facade.UserDataFacade;
 import ru.grigoriev.web.constant.WebConstant;
 import ru.grigoriev.web.request.UserBookRequest;
+import ru.grigoriev.web.response.PageResponse;
+import ru.grigoriev.web.response.UserBookBatchItemResponse;
+import ru.grigoriev.web.response.UserBookImportResponse;
 import ru.grigoriev.web.response.UserBookResponse;
+import ru.grigoriev.web.response.UserResponse;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.Pattern;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.UUID;
 
 import static ru.grigoriev.web.constant.WebConstant.REQUEST_ID_PATTERN;
 import static ru.grigoriev.web.constant.WebConstant.RQID;
 
 @Slf4j
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping(value = WebConstant.VERSION_URL + "/user",
         produces = MediaType.APPLICATION_JSON_VALUE)
 public class UserController {
@@ -38,10 +55,63 @@ public class UserController {
     public UserBookResponse createUserWithBooks(@RequestBody @Valid UserBookRequest request,
                                                 @RequestHeader(RQID) @Pattern(regexp = REQUEST_ID_PATTERN) final String requestId) {
         UserBookResponse response = userDataFacade.createUserWithBooks(request);
-        log.info("Response with created user and his books: {}", response);
+        log.info("Response with created user {} and his books: {}", response.getUserId(), response.getBooksIdList().length);
         return response;
     }
 
+    @PostMapping(value = "/create-batch")
+    @Operation(summary = "Create many user book rows, committing in chunks.",
+            responses = {
+                    @ApiResponse(description = "Result of creation for every request item",
+                            content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    array = @ArraySchema(schema = @Schema(implementation = UserBookBatchItemResponse.class))))})
+    public List<UserBookBatchItemResponse> createUsersWithBooks(@RequestBody List<UserBookRequest> request,
+                                                                @RequestHeader(RQID) @Pattern(regexp = REQUEST_ID_PATTERN) final String requestId) {
+        List<UserBookBatchItemResponse> response = userDataFacade.createUsersWithBooks(request);
+        log.info("Response with created users and their books: {} items", response.size());
+        return response;
+    }
+
+    @PostMapping(value = "/import", consumes = WebConstant.NDJSON_VALUE)
+    @Operation(summary = "Import users and their books from NDJSON using PostgreSQL COPY. " +
+            "The import id is generated by the server and sent in the Location header before the body is read.",
+            responses = {
+                    @ApiResponse(description = "Final import status",
+                            content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = UserBookImportResponse.class)))})
+    public UserBookImportResponse importUsersWithBooks(InputStream request,
+                                                       @RequestHeader(RQID) @Pattern(regexp = REQUEST_ID_PATTERN) final String requestId,
+                                                       HttpServletResponse httpResponse) throws IOException {
+        String importId = UUID.randomUUID().toString();
+        log.info("Import {} started by request {}", importId, requestId);
+        httpResponse.setHeader(HttpHeaders.LOCATION,
+                ServletUriComponentsBuilder.fromCurrentRequestUri().path("/{importId}").buildAndExpand(importId).toUriString());
+        httpResponse.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        httpResponse.flushBuffer();
+        UserBookImportResponse response = userDataFacade.importUsersWithBooks(importId, request);
+        log.info("Response with import status: {}", response);
+        return response;
+    }
+
+    @GetMapping(value = "/import/{importId}")
+    @Operation(summary = "Getting the progress of an import by the import id from the Location header of the import response.",
+            responses = {
+                    @ApiResponse(description = "Current import status",
+                            content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = UserBookImportResponse.class)))})
+    public UserBookImportResponse getImportStatus(@PathVariable String importId) {
+        return userDataFacade.getImportStatus(importId);
+    }
+
+    @GetMapping(value = "/export", produces = WebConstant.NDJSON_VALUE)
+    @Operation(summary = "Streaming export of all users and ids of their books as NDJSON.")
+    public ResponseEntity<StreamingResponseBody> exportUsersWithBooks() {
+        log.info("Export of users and their books requested");
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(WebConstant.NDJSON_VALUE))
+                .body(userDataFacade.exportUsersWithBooks());
+    }
+
     @PutMapping(value = "/update/{userId}")
     @Operation(summary = "Update a user and her books.",
             responses = {
@@ -50,7 +120,7 @@ public class UserController {
                                     schema = @Schema(implementation = UserBookResponse.class)))})
     public UserBookResponse updateUserWithBooks(@PathVariable Long userId, @RequestBody UserBookRequest request) {
         UserBookResponse response = userDataFacade.updateUserWithBooks(userId, request);
-        log.info("Response with updated user and his books: {}", response);
+        log.info("Response with updated user {} and his books: {}", response.getUserId(), response.getBooksIdList().length);
         return response;
     }
 
@@ -60,9 +130,67 @@ public class UserController {
                     @ApiResponse(description = "User and list of id of his books",
                             content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
                                     schema = @Schema(implementation = UserBookResponse.class)))})
-    public UserBookResponse getUserWithBooks(@PathVariable Long userId) {
+    public ResponseEntity<UserBookResponse> getUserWithBooks(@PathVariable Long userId,
+                                                             @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        long currentVersion = userDataFacade.getUserVersion(userId);
+        String currentETag = eTag(currentVersion);
+        if (ifNoneMatch != null && eTagMatches(ifNoneMatch, currentETag)) {
+            log.info("User and his books not modified: userId {}", userId);
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(currentETag)
+                    .build();
+        }
         UserBookResponse response = userDataFacade.getUserWithBooks(userId);
-        log.info("Response with user and his books: {}", response);
+        if (response.getVersion() < currentVersion) {
+            // Чтение, начатое до обновления, могло вернуть в кэш старое тело уже после сброса
+            log.info("Cached user and his books are older than the database: userId {}, version {} < {}",
+                    userId, response.getVersion(), currentVersion);
+            response = userDataFacade.refreshUserWithBooks(userId);
+        }
+        log.info("Response with user {} and his books: {}", response.getUserId(), response.getBooksIdList().length);
+        return ResponseEntity.ok()
+                .eTag(eTag(response.getVersion()))
+                .body(response);
+    }
+
+    @GetMapping(value = "/get")
+    @Operation(summary = "Getting many users and their books by ids. Unknown ids are skipped.",
+            responses = {
+                    @ApiResponse(description = "Users and lists of id of their books in the order of the request",
+                            content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    array = @ArraySchema(schema = @Schema(implementation = UserBookResponse.class))))})
+    public List<UserBookResponse> getUsersWithBooks(@RequestParam List<Long> ids) {
+        List<UserBookResponse> response = userDataFacade.getUsersWithBooks(ids);
+        log.info("Response with users and their books: {} items", response.size());
+        return response;
+    }
+
+    @PostMapping(value = "/get")
+    @Operation(summary = "Getting many users and their books by ids passed in the body, for long lists of ids.",
+            responses = {
+                    @ApiResponse(description = "Users and lists of id of their books in the order of the request",
+                            content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    array = @ArraySchema(schema = @Schema(implementation = UserBookResponse.class))))})
+    public List<UserBookResponse> getUsersWithBooksByBody(@RequestBody List<Long> ids) {
+        return getUsersWithBooks(ids);
+    }
+
+    @GetMapping(value = "/list")
+    @Operation(summary = "Page of users ordered by id. Pass nextCursor of the previous page as after.")
+    public PageResponse<UserResponse> getUsers(@RequestParam(required = false) String after,
+                                               @RequestParam(defaultValue = "50") int limit) {
+        PageResponse<UserResponse> response = userDataFacade.getUsers(after, limit);
+        log.info("Response with page of users: {} items", response.getItems().size());
+        return response;
+    }
+
+    @GetMapping(value = "/{userId}/books")
+    @Operation(summary = "Page of ids of user books ordered by id. Pass nextCursor of the previous page as after.")
+    public PageResponse<Long> getUserBooks(@PathVariable Long userId,
+                                           @RequestParam(required = false) String after,
+                                           @RequestParam(defaultValue = "50") int limit) {
+        PageResponse<Long> response = userDataFacade.getUserBooks(userId, after, limit);
+        log.info("Response with page of user books: {} items", response.getItems().size());
         return response;
     }
 
@@ -72,4 +200,27 @@ public class UserController {
         log.info("Delete user and his books:  userId {}", userId);
         userDataFacade.deleteUserWithBooks(userId);
     }
+
+    /**
+     * Сильный ETag из версии пользователя, которую увеличивает каждое обновление пользователя или его книг.
+     */
+    private String eTag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Слабое сравнение ETag, как для If-None-Match: префикс W/ не учитывается, * совпадает с любой версией.
+     */
+    private boolean eTagMatches(String ifNoneMatch, String eTag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -6,5 +6,7 @@ import lombok.experimental.UtilityClass;
 public class WebConstant {
     public static final String VERSION_URL = "/api/v1";
     public static final String RQID = "rqid";
+    public static final String SQL_STATEMENT_COUNT = "X-Sql-Statement-Count";
     public static final String REQUEST_ID_PATTERN = "^[A-Za-z0-9_-]*$";
+    public static final String NDJSON_VALUE = "application/x-ndjson";
 }
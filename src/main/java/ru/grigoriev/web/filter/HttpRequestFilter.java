@@ -1,30 +1,143 @@
 package ru.grigoriev.web.filter;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import ru.grigoriev.config.SqlStatementBudgetProperties;
+import ru.grigoriev.statistics.SqlStatementCounter;
+import ru.grigoriev.web.constant.WebConstant;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.UUID;
 
+/**
+ * Кладет requestId в MDC и считает SQL-запросы, выполненные за время запроса.
+ * Число запросов на момент начала записи тела (или конца обработки, если тела нет) отдается в заголовке {@link WebConstant#SQL_STATEMENT_COUNT},
+ * итоговое число публикуется метрикой sql.statements.per.request по endpoint-ам и сверяется с бюджетом.
+ * В строгом режиме (sql-statements.fail-on-exceeded) бюджет проверяется до записи тела, поэтому клиент получает 500, а не 200.
+ * Запросы, выполненные уже после начала записи тела, ответ не меняют и только попадают в лог.
+ */
 @Slf4j
 @Component
 public class HttpRequestFilter extends OncePerRequestFilter {
+    static final String SQL_STATEMENTS_METRIC = "sql.statements.per.request";
+    private static final String UNKNOWN_ENDPOINT = "UNKNOWN";
+
+    private final SqlStatementCounter sqlStatementCounter;
+    private final SqlStatementBudgetProperties budgetProperties;
+    private final MeterRegistry meterRegistry;
+
+    public HttpRequestFilter(SqlStatementCounter sqlStatementCounter,
+                             SqlStatementBudgetProperties budgetProperties,
+                             MeterRegistry meterRegistry) {
+        this.sqlStatementCounter = sqlStatementCounter;
+        this.budgetProperties = budgetProperties;
+        this.meterRegistry = meterRegistry;
+    }
+
     @Override
     protected void doFilterInternal(final HttpServletRequest request,
                                     final HttpServletResponse response,
                                     final FilterChain filterChain) throws ServletException, IOException {
-        String requestId = request.getHeader("rqid");
-        MDC.put("requestId", requestId);
+        String requestId = request.getHeader(WebConstant.RQID);
+        if (requestId == null) {
+            requestId = UUID.randomUUID().toString();
+        }
+        MDC.put(SqlStatementCounter.REQUEST_ID, requestId);
         log.info("RequestId : {}", requestId);
+        sqlStatementCounter.start();
         try {
-            filterChain.doFilter(request, response);
+            StatementCountResponse countResponse = new StatementCountResponse(request, response);
+            filterChain.doFilter(request, countResponse);
+            countResponse.writeStatementCount();
         } finally {
-            MDC.remove("requestId");
+            int statementCount = sqlStatementCounter.finish();
+            recordStatementCount(request, requestId, statementCount);
+            MDC.remove(SqlStatementCounter.REQUEST_ID);
+        }
+    }
+
+    private void recordStatementCount(HttpServletRequest request, String requestId, int statementCount) {
+        DistributionSummary.builder(SQL_STATEMENTS_METRIC)
+                .description("SQL statements executed per HTTP request")
+                .tag("method", request.getMethod())
+                .tag("uri", uri(request))
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(statementCount);
+
+        String endpoint = endpoint(request);
+        int budget = budgetProperties.budgetFor(endpoint);
+        if (statementCount > budget) {
+            log.warn("Request {} to {} executed {} SQL statements, budget is {}", requestId, endpoint, statementCount, budget);
+        }
+    }
+
+    /**
+     * В строгом режиме роняет запрос, пока тело ответа еще не записано.
+     */
+    private void checkBudget(HttpServletRequest request, int statementCount) {
+        String endpoint = endpoint(request);
+        int budget = budgetProperties.budgetFor(endpoint);
+        if (budgetProperties.isFailOnExceeded() && statementCount > budget) {
+            throw new IllegalStateException("SQL statement budget exceeded for " + endpoint
+                    + ": " + statementCount + " > " + budget);
+        }
+    }
+
+    private String endpoint(HttpServletRequest request) {
+        return request.getMethod() + " " + uri(request);
+    }
+
+    private String uri(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern == null ? UNKNOWN_ENDPOINT : pattern.toString();
+    }
+
+    /**
+     * Заголовок ставится и бюджет проверяется перед первой записью тела, пока ответ еще не зафиксирован.
+     */
+    private class StatementCountResponse extends HttpServletResponseWrapper {
+        private final HttpServletRequest request;
+        private boolean budgetChecked;
+
+        StatementCountResponse(HttpServletRequest request, HttpServletResponse response) {
+            super(response);
+            this.request = request;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeStatementCount();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeStatementCount();
+            return super.getWriter();
+        }
+
+        private void writeStatementCount() {
+            if (!isCommitted()) {
+                int statementCount = sqlStatementCounter.current();
+                setHeader(WebConstant.SQL_STATEMENT_COUNT, String.valueOf(statementCount));
+                if (!budgetChecked) {
+                    budgetChecked = true;
+                    checkBudget(request, statementCount);
+                }
+            }
         }
     }
 }
@@ -0,0 +1,16 @@
+package ru.grigoriev.web.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class PageResponse<T> {
+    private List<T> items;
+    /**
+     * Непрозрачный курсор следующей страницы, {@code null} - страница последняя.
+     */
+    private String nextCursor;
+}
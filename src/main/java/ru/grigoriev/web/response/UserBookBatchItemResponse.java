@@ -0,0 +1,12 @@
+package ru.grigoriev.web.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class UserBookBatchItemResponse {
+    private int index;
+    private UserBookResponse response;
+    private String errorMessage;
+}
@@ -0,0 +1,20 @@
+package ru.grigoriev.web.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+@Builder
+public class UserBookImportResponse {
+    private String importId;
+    private String state;
+    private long usersImported;
+    private long booksImported;
+    private long recordsRejected;
+    private long chunksFailed;
+    private String lastError;
+    private Instant startedAt;
+    private Instant finishedAt;
+}
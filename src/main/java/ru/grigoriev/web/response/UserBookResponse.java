@@ -1,13 +1,22 @@
 package ru.grigoriev.web.response;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Builder;
 import lombok.Data;
 
-import java.util.List;
-
 @Data
 @Builder
 public class UserBookResponse {
     private Long userId;
-    private List<Long> booksIdList;
+    /**
+     * Примитивный массив: Jackson пишет его встроенным сериализатором long[] без упаковки в Long,
+     * JSON остается тем же массивом чисел.
+     */
+    private long[] booksIdList;
+
+    /**
+     * Версия пользователя, с которой прочитан список книг. Отдается заголовком ETag, а не в теле.
+     */
+    @JsonIgnore
+    private Long version;
 }
@@ -4,4 +4,8 @@ import lombok.Data;
 
 @Data
 public class UserResponse {
+    private Long id;
+    private String fullName;
+    private String title;
+    private int age;
 }
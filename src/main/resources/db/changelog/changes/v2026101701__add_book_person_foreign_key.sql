@@ -0,0 +1,7 @@
+DELETE
+FROM myschema.book b
+WHERE NOT EXISTS(SELECT 1 FROM myschema.person p WHERE p.id = b.person_id);
+
+alter table myschema.book
+    add constraint fk_myschema_book_person_id foreign key (person_id)
+        references myschema.person (id) on delete cascade;
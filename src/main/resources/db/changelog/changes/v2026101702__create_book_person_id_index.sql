@@ -0,0 +1,3 @@
+create index idx_myschema_book_person_id on myschema.book (person_id) include (id);
+
+comment on index myschema.idx_myschema_book_person_id is 'Книги пользователя, id в индексе для index-only чтения';
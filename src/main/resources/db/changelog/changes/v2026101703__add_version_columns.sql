@@ -0,0 +1,8 @@
+alter table myschema.person
+    add column version BIGINT not null default 0;
+
+alter table myschema.book
+    add column version BIGINT not null default 0;
+
+comment on column myschema.person.version is 'Версия пользователя и его книг для оптимистической блокировки';
+comment on column myschema.book.version is 'Версия книги для оптимистической блокировки';
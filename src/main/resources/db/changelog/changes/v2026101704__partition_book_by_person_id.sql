@@ -0,0 +1,146 @@
+--liquibase formatted sql
+
+-- Перенос выполняет Liquibase при старте приложения: запуск ждет, пока процедура скопирует все книги
+-- порциями по 10000 строк, каждая порция фиксируется отдельно и не блокирует запись в book.
+-- Для большой таблицы перенос можно выполнить заранее отдельным шагом, до выкладки новой версии:
+-- liquibase update --changelog-file=db/changelog/db.changelog-master.yaml -Dbook-partition-count=16,
+-- тогда приложение при старте найдет эти changeset-ы уже примененными.
+-- Под монопольной блокировкой выполняются только проверка триггера и переименование таблиц.
+
+--changeset Grigoriev:v2026101704-1-create-partitioned-book splitStatements:false
+create table myschema.book_partitioned
+(
+    id         BIGINT      not null,
+    person_id  BIGINT      not null,
+    title      varchar(50) not null,
+    author     varchar(50) not null,
+    page_count integer     not null,
+    version    BIGINT      not null default 0,
+    constraint pk_myschema_book_partitioned_id_person_id primary key (id, person_id),
+    constraint fk_myschema_book_person_id foreign key (person_id)
+        references myschema.person (id) on delete cascade
+) partition by hash (person_id);
+
+DO $$
+BEGIN
+    FOR remainder IN 0..${book-partition-count} - 1 LOOP
+        EXECUTE format('create table myschema.book_p%s partition of myschema.book_partitioned '
+                           || 'for values with (modulus %s, remainder %s)',
+                       remainder, ${book-partition-count}, remainder);
+    END LOOP;
+END
+$$;
+
+create index idx_myschema_book_partitioned_person_id on myschema.book_partitioned (person_id) include (id);
+
+create function myschema.book_mirror_to_partitioned() returns trigger
+    language plpgsql as
+$$
+BEGIN
+    IF TG_OP = 'DELETE' OR (TG_OP = 'UPDATE' AND OLD.person_id <> NEW.person_id) THEN
+        DELETE FROM myschema.book_partitioned WHERE id = OLD.id AND person_id = OLD.person_id;
+    END IF;
+    IF TG_OP = 'DELETE' THEN
+        RETURN OLD;
+    END IF;
+    INSERT INTO myschema.book_partitioned (id, person_id, title, author, page_count, version)
+    VALUES (NEW.id, NEW.person_id, NEW.title, NEW.author, NEW.page_count, NEW.version)
+    ON CONFLICT (id, person_id) DO UPDATE
+        SET title      = EXCLUDED.title,
+            author     = EXCLUDED.author,
+            page_count = EXCLUDED.page_count,
+            version    = EXCLUDED.version;
+    RETURN NEW;
+END
+$$;
+
+create trigger trg_myschema_book_mirror
+    after insert or update or delete
+    on myschema.book
+    for each row
+execute function myschema.book_mirror_to_partitioned();
+
+--changeset Grigoriev:v2026101704-2-create-backfill-procedure splitStatements:false
+create procedure myschema.book_backfill_partitioned(batch_size integer)
+    language plpgsql as
+$$
+DECLARE
+    last_id BIGINT := (SELECT coalesce(min(id), 0) - 1 FROM myschema.book);
+    copied  integer;
+BEGIN
+    LOOP
+        WITH batch AS (
+            SELECT id, person_id, title, author, page_count, version
+            FROM myschema.book
+            WHERE id > last_id
+            ORDER BY id
+            LIMIT batch_size
+            FOR SHARE
+        ), inserted AS (
+            INSERT INTO myschema.book_partitioned (id, person_id, title, author, page_count, version)
+            SELECT id, person_id, title, author, page_count, version
+            FROM batch
+            ON CONFLICT (id, person_id) DO NOTHING
+        )
+        SELECT count(*), max(id) INTO copied, last_id FROM batch;
+        EXIT WHEN copied = 0;
+        COMMIT;
+    END LOOP;
+END
+$$;
+
+--changeset Grigoriev:v2026101704-3-backfill-partitioned-book runInTransaction:false
+call myschema.book_backfill_partitioned(10000);
+
+--changeset Grigoriev:v2026101704-3a-verify-partitioned-book splitStatements:false
+--preconditions onFail:MARK_RAN
+--precondition-sql-check expectedResult:1 select count(*) from information_schema.tables where table_schema = 'myschema' and table_name = 'book_partitioned'
+-- Полная сверка идет без блокировки: оба подсчета выполняются одним запросом по одному снимку,
+-- а триггер пишет в book_partitioned в той же транзакции, что и в book
+DO $$
+BEGIN
+    IF (SELECT count(*) FROM myschema.book) <> (SELECT count(*) FROM myschema.book_partitioned)
+        OR EXISTS (SELECT 1
+                   FROM myschema.book b
+                   WHERE NOT EXISTS (SELECT 1
+                                     FROM myschema.book_partitioned p
+                                     WHERE p.id = b.id
+                                       AND p.person_id = b.person_id)) THEN
+        RAISE EXCEPTION 'myschema.book_partitioned is out of sync with myschema.book';
+    END IF;
+END
+$$;
+
+--changeset Grigoriev:v2026101704-4-swap-partitioned-book splitStatements:false
+lock table myschema.book in access exclusive mode;
+
+-- После сверки таблицы совпадают, пока работает триггер: под блокировкой проверяется только он
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1
+                   FROM pg_trigger
+                   WHERE tgrelid = 'myschema.book'::regclass
+                     AND tgname = 'trg_myschema_book_mirror'
+                     AND tgenabled <> 'D') THEN
+        RAISE EXCEPTION 'myschema.book mirror trigger is missing or disabled, myschema.book_partitioned may be out of sync';
+    END IF;
+END
+$$;
+
+drop trigger trg_myschema_book_mirror on myschema.book;
+drop function myschema.book_mirror_to_partitioned();
+drop procedure myschema.book_backfill_partitioned(integer);
+drop table myschema.book;
+
+alter table myschema.book_partitioned rename to book;
+alter table myschema.book rename constraint pk_myschema_book_partitioned_id_person_id to pk_myschema_book_id_person_id;
+alter index myschema.idx_myschema_book_partitioned_person_id rename to idx_myschema_book_person_id;
+
+comment on table myschema.book is 'Справочник используется для хранения баджей, секционирован по хэшу person_id';
+comment on column myschema.book.id is 'Идентификатор книги';
+comment on column myschema.book.person_id is 'Идентификатор пользователя';
+comment on column myschema.book.title is 'Заголовок';
+comment on column myschema.book.author is 'Автор';
+comment on column myschema.book.page_count is 'Количество страниц';
+comment on column myschema.book.version is 'Версия книги для оптимистической блокировки';
+comment on index myschema.idx_myschema_book_person_id is 'Книги пользователя, id в индексе для index-only чтения';
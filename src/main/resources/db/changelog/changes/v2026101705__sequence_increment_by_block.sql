@@ -0,0 +1,14 @@
+--liquibase formatted sql
+
+-- Значение последовательности становится первым id блока, а шаг - размером блока.
+-- Раньше значение hi резервировало id [hi * 100, hi * 100 + 99], поэтому счет продолжается
+-- за последним таким блоком и за наибольшим уже сохраненным id.
+
+--changeset Grigoriev:v2026101705-1-sequence-increment-by-block
+alter sequence sequence increment by 100;
+
+select setval('sequence',
+              greatest((select (last_value + case when is_called then 1 else 0 end) * 100 from sequence),
+                       (select coalesce(max(id), 0) + 1 from myschema.person),
+                       (select coalesce(max(id), 0) + 1 from myschema.book)),
+              false);
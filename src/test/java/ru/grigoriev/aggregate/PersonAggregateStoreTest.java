@@ -0,0 +1,125 @@
+package ru.grigoriev.aggregate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.grigoriev.config.UnitTest;
+import ru.grigoriev.repository.PersonAggregateRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Тестирование функционала {@link PersonAggregateStore}.
+ */
+@UnitTest
+@DisplayName("Testing person aggregate store functionality.")
+public class PersonAggregateStoreTest {
+    @Mock
+    private PersonAggregateRepository repository;
+
+    @InjectMocks
+    private PersonAggregateStore store;
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("В транзакции агрегат читается один раз и записывается один раз перед фиксацией.")
+    void save_InTransactionTest() {
+        //given
+        TransactionSynchronizationManager.initSynchronization();
+        PersonAggregate person = person(1L);
+        when(repository.findById(1L)).thenReturn(Optional.of(person));
+
+        //when
+        PersonAggregate loaded = store.findById(1L).orElseThrow();
+        loaded.getBooks().add(book(10L));
+        store.save(loaded);
+        store.findById(1L).orElseThrow().getBooks().add(book(11L));
+        store.save(loaded);
+
+        //then
+        verify(repository, times(1)).findById(1L);
+        verify(repository, never()).save(any());
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(synchronization -> synchronization.beforeCommit(false));
+        verify(repository, times(1)).save(person);
+        assertThat(person.getBooks()).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("Владелец книги ищется среди загруженных агрегатов без запроса, удаление отбрасывает изменения.")
+    void findAllByBookIds_InTransactionTest() {
+        //given
+        TransactionSynchronizationManager.initSynchronization();
+        PersonAggregate person = person(1L);
+        person.getBooks().add(book(10L));
+        when(repository.findById(1L)).thenReturn(Optional.of(person));
+        store.findById(1L);
+
+        //when
+        List<PersonAggregate> owners = store.findAllByBookIds(List.of(10L));
+        store.save(person);
+        store.deleteById(1L);
+
+        //then
+        assertThat(owners).containsExactly(person);
+        verify(repository, never()).findPersonIdsByBookIds(any());
+        verify(repository).deleteById(1L);
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(synchronization -> synchronization.beforeCommit(false));
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Вне транзакции агрегат сохраняется сразу.")
+    void save_WithoutTransactionTest() {
+        //given
+        PersonAggregate person = person(1L);
+
+        //when
+        store.save(person);
+
+        //then
+        verify(repository).save(person);
+    }
+
+    private PersonAggregate person(Long id) {
+        PersonAggregate person = new PersonAggregate();
+        person.setId(id);
+        person.setFullName("Full Name");
+        person.setTitle("title");
+        person.setAge(30);
+        person.setVersion(0L);
+        return person;
+    }
+
+    private BookEntry book(Long id) {
+        BookEntry book = new BookEntry();
+        book.setId(id);
+        book.setTitle("title");
+        book.setAuthor("author");
+        book.setPageCount(100);
+        return book;
+    }
+}
@@ -0,0 +1,65 @@
+package ru.grigoriev.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import ru.grigoriev.AppApplication;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Контекст приложения для бенчмарков, подключенный к {@link BenchmarkDatabase}: без веб-сервера
+ * или с Tomcat на случайном порту для нагрузочных бенчмарков.
+ * Тестовые конфигурации (контейнер PostgreSQL) лежат в том же classpath и исключаются из сканирования.
+ * Свойства передаются аргументами командной строки: свойства по умолчанию перекрыл бы application.yaml.
+ * Повторенный аргумент связывается как список значений, поэтому свойство бенчмарка заменяет значение по умолчанию по ключу.
+ */
+final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start(String... properties) {
+        return start(WebApplicationType.NONE, properties);
+    }
+
+    static ConfigurableApplicationContext startWeb(String... properties) {
+        List<String> webProperties = new ArrayList<>(List.of("server.port=0"));
+        webProperties.addAll(List.of(properties));
+        return start(WebApplicationType.SERVLET, webProperties.toArray(String[]::new));
+    }
+
+    private static ConfigurableApplicationContext start(WebApplicationType webApplicationType, String... properties) {
+        Map<String, String> benchmarkProperties = new LinkedHashMap<>();
+        Stream.concat(Stream.of(
+                                "spring.datasource.url=" + BenchmarkDatabase.JDBC_URL,
+                                "spring.datasource.username=" + BenchmarkDatabase.USERNAME,
+                                "spring.datasource.password=" + BenchmarkDatabase.PASSWORD,
+                                "logging.level.org.hibernate.SQL=WARN",
+                                "logging.level.root=WARN"),
+                        Stream.of(properties))
+                .forEach(property -> benchmarkProperties.put(property.substring(0, property.indexOf('=')), property));
+        return new SpringApplicationBuilder(AppApplication.class)
+                .web(webApplicationType)
+                .initializers(context -> context.getBeanFactory()
+                        .registerSingleton("testConfigurationExcludeFilter", new TestConfigurationExcludeFilter()))
+                .run(benchmarkProperties.values().stream()
+                        .map(property -> "--" + property)
+                        .toArray(String[]::new));
+    }
+
+    private static class TestConfigurationExcludeFilter extends TypeExcludeFilter {
+        @Override
+        public boolean match(MetadataReader metadataReader, MetadataReaderFactory metadataReaderFactory) {
+            return metadataReader.getAnnotationMetadata().hasAnnotation(TestConfiguration.class.getName());
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package ru.grigoriev.benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+/**
+ * Подключение бенчмарков к локальной базе PostgreSQL со схемой приложения.
+ * Параметры переопределяются через -jvmArgsAppend "-Dbenchmark.jdbc-url=...".
+ */
+final class BenchmarkDatabase {
+    static final String JDBC_URL = System.getProperty("benchmark.jdbc-url",
+            "jdbc:postgresql://localhost:5432/userbook?reWriteBatchedInserts=true");
+    static final String USERNAME = System.getProperty("benchmark.username", "postgres");
+    static final String PASSWORD = System.getProperty("benchmark.password", "postgres");
+
+    private BenchmarkDatabase() {
+    }
+
+    static Connection connect() throws SQLException {
+        return DriverManager.getConnection(JDBC_URL, USERNAME, PASSWORD);
+    }
+}
@@ -0,0 +1,107 @@
+package ru.grigoriev.benchmark;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.grigoriev.web.response.UserBookResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Путь id книг от строк результата до JSON: прежний List&lt;Long&gt; и примитивный long[].
+ * Сеть и база исключены: строки уже в памяти, JSON пишется в пустой поток.
+ * Байты на операцию печатает профайлер gc: -Dbenchmark="BookIdSerialization -prof gc".
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BookIdSerializationBenchmark {
+    private static final long USER_ID = 1L;
+
+    @Param({"10", "1000", "100000"})
+    int bookCount;
+
+    ObjectMapper objectMapper;
+    OutputStream sink;
+    long[] rows;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build()
+                .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+        sink = OutputStream.nullOutputStream();
+        rows = new long[bookCount];
+        for (int i = 0; i < bookCount; i++) {
+            rows[i] = 1_000_000L + i;
+        }
+        String boxedJson = objectMapper.writeValueAsString(boxedResponse());
+        String primitiveJson = objectMapper.writeValueAsString(primitiveResponse());
+        if (!boxedJson.equals(primitiveJson)) {
+            throw new IllegalStateException("JSON differs: " + boxedJson + " vs " + primitiveJson);
+        }
+    }
+
+    @Benchmark
+    public void boxed() throws IOException {
+        objectMapper.writeValue(sink, boxedResponse());
+    }
+
+    @Benchmark
+    public void primitive() throws IOException {
+        objectMapper.writeValue(sink, primitiveResponse());
+    }
+
+    /**
+     * Как прежний UserServiceImplTemplate: каждая строка упаковывается в Long и добавляется в ArrayList.
+     */
+    private BoxedUserBookResponse boxedResponse() {
+        List<Long> ids = new ArrayList<>();
+        for (long row : rows) {
+            ids.add(row);
+        }
+        return new BoxedUserBookResponse(USER_ID, ids);
+    }
+
+    /**
+     * Как UserServiceImplTemplate сейчас: растущий long[] и одна обрезка по числу строк.
+     */
+    private UserBookResponse primitiveResponse() {
+        long[] ids = new long[16];
+        int count = 0;
+        for (long row : rows) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+            }
+            ids[count++] = row;
+        }
+        return UserBookResponse.builder()
+                .userId(USER_ID)
+                .booksIdList(Arrays.copyOf(ids, count))
+                .build();
+    }
+
+    /**
+     * Прежний UserBookResponse.
+     */
+    record BoxedUserBookResponse(Long userId, List<Long> booksIdList) {
+    }
+}
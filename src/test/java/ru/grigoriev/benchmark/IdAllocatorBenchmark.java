@@ -0,0 +1,57 @@
+package ru.grigoriev.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.grigoriev.generator.IdAllocator;
+import ru.grigoriev.generator.SequenceBlockIdAllocator;
+import ru.grigoriev.generator.SnowflakeIdAllocator;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Стоимость выдачи одного id без базы данных: прежний UUID, блоки последовательности и Snowflake.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class IdAllocatorBenchmark {
+    @Param({"uuid", "sequence", "snowflake"})
+    String allocator;
+
+    IdAllocator idAllocator;
+
+    @Setup
+    public void setUp() {
+        AtomicLong sequence = new AtomicLong(1);
+        idAllocator = createAllocator(allocator, () -> sequence.getAndAdd(100));
+    }
+
+    @Benchmark
+    public long nextId() {
+        return idAllocator.nextId();
+    }
+
+    static IdAllocator createAllocator(String type, LongSupplier nextBlock) {
+        return switch (type) {
+            case "uuid" -> () -> UUID.randomUUID().getMostSignificantBits();
+            case "sequence" -> new SequenceBlockIdAllocator(nextBlock, 100);
+            case "snowflake" -> new SnowflakeIdAllocator(0);
+            default -> throw new IllegalArgumentException("Unknown allocator: " + type);
+        };
+    }
+}
@@ -0,0 +1,98 @@
+package ru.grigoriev.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.grigoriev.generator.IdAllocator;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Скорость пакетной вставки книг и размер индекса первичного ключа для каждого способа выдачи id.
+ * Требует локальный PostgreSQL, см. {@link BenchmarkDatabase}. Размер индекса печатается после прогона.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class IdInsertBenchmark {
+    private static final int BATCH_SIZE = 1000;
+    private static final String TABLE = "bench_id_book";
+
+    @Param({"uuid", "sequence", "snowflake"})
+    String allocator;
+
+    Connection connection;
+    PreparedStatement insert;
+    IdAllocator idAllocator;
+
+    @Setup
+    public void setUp() throws SQLException {
+        connection = BenchmarkDatabase.connect();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + TABLE);
+            statement.execute("CREATE TABLE " + TABLE + " (id BIGINT PRIMARY KEY, person_id BIGINT NOT NULL, " +
+                    "title VARCHAR(50) NOT NULL, author VARCHAR(50) NOT NULL, page_count INTEGER NOT NULL)");
+        }
+        connection.setAutoCommit(false);
+        PreparedStatement nextBlock = connection.prepareStatement("SELECT nextval('sequence')");
+        idAllocator = IdAllocatorBenchmark.createAllocator(allocator, () -> {
+            try (ResultSet rs = nextBlock.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        insert = connection.prepareStatement("INSERT INTO " + TABLE +
+                " (id, person_id, title, author, page_count) VALUES (?,?,?,?,?)");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int[] insertBatch() throws SQLException {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            insert.setLong(1, idAllocator.nextId());
+            insert.setLong(2, 1L);
+            insert.setString(3, "benchmark title");
+            insert.setString(4, "benchmark author");
+            insert.setInt(5, 100);
+            insert.addBatch();
+        }
+        int[] result = insert.executeBatch();
+        connection.commit();
+        return result;
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT count(*), pg_relation_size('" + TABLE + "_pkey') FROM " + TABLE)) {
+            rs.next();
+            long rows = rs.getLong(1);
+            long indexBytes = rs.getLong(2);
+            System.out.printf("%nallocator=%s rows=%d pk index=%d bytes (%.1f bytes/row)%n",
+                    allocator, rows, indexBytes, rows == 0 ? 0.0 : (double) indexBytes / rows);
+            statement.execute("DROP TABLE " + TABLE);
+        }
+        connection.commit();
+        connection.close();
+    }
+}
@@ -0,0 +1,154 @@
+package ru.grigoriev.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.dao.OptimisticLockingFailureException;
+import ru.grigoriev.facade.OptimisticLockRetry;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Обновление небольшого числа "горячих" пользователей из нескольких потоков:
+ * SELECT ... FOR UPDATE против проверки версии в UPDATE с повтором через {@link OptimisticLockRetry}.
+ * SampleTime печатает p99, отказы после исчерпания попыток печатаются после прогона.
+ * Требует локальный PostgreSQL, см. {@link BenchmarkDatabase}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(8)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class LockContentionBenchmark {
+    private static final String TABLE = "bench_lock_person";
+
+    @State(Scope.Benchmark)
+    public static class HotKeys {
+        @Param({"pessimistic", "optimistic"})
+        String mode;
+
+        @Param({"1", "16"})
+        int hotKeys;
+
+        final OptimisticLockRetry retry = new OptimisticLockRetry(3, Duration.ofMillis(1), Duration.ofMillis(10));
+        final AtomicLong failedUpdates = new AtomicLong();
+
+        @Setup
+        public void setUp() throws SQLException {
+            try (Connection connection = BenchmarkDatabase.connect();
+                 Statement statement = connection.createStatement()) {
+                statement.execute("DROP TABLE IF EXISTS " + TABLE);
+                statement.execute("CREATE TABLE " + TABLE + " (id BIGINT PRIMARY KEY, age INTEGER NOT NULL, " +
+                        "version BIGINT NOT NULL)");
+                statement.execute("INSERT INTO " + TABLE + " SELECT n, 0, 0 FROM generate_series(1, " + hotKeys + ") n");
+            }
+        }
+
+        @TearDown
+        public void tearDown() throws SQLException {
+            try (Connection connection = BenchmarkDatabase.connect();
+                 Statement statement = connection.createStatement()) {
+                System.out.printf("%nmode=%s hotKeys=%d failed updates=%d%n", mode, hotKeys, failedUpdates.get());
+                statement.execute("DROP TABLE " + TABLE);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Session {
+        Connection connection;
+        PreparedStatement selectForUpdate;
+        PreparedStatement select;
+        PreparedStatement update;
+        PreparedStatement updateVersioned;
+
+        @Setup(Level.Trial)
+        public void setUp() throws SQLException {
+            connection = BenchmarkDatabase.connect();
+            connection.setAutoCommit(false);
+            selectForUpdate = connection.prepareStatement("SELECT age FROM " + TABLE + " WHERE id = ? FOR UPDATE");
+            select = connection.prepareStatement("SELECT age, version FROM " + TABLE + " WHERE id = ?");
+            update = connection.prepareStatement("UPDATE " + TABLE + " SET age = ?, version = version + 1 WHERE id = ?");
+            updateVersioned = connection.prepareStatement("UPDATE " + TABLE +
+                    " SET age = ?, version = version + 1 WHERE id = ? AND version = ?");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws SQLException {
+            connection.close();
+        }
+    }
+
+    @Benchmark
+    public boolean updateHotKey(HotKeys hotKeys, Session session) throws SQLException {
+        long id = ThreadLocalRandom.current().nextInt(hotKeys.hotKeys) + 1;
+        if ("pessimistic".equals(hotKeys.mode)) {
+            return updatePessimistic(session, id);
+        }
+        try {
+            return hotKeys.retry.execute(() -> updateOptimistic(session, id));
+        } catch (OptimisticLockingFailureException e) {
+            hotKeys.failedUpdates.incrementAndGet();
+            return false;
+        }
+    }
+
+    private boolean updatePessimistic(Session session, long id) throws SQLException {
+        session.selectForUpdate.setLong(1, id);
+        int age;
+        try (ResultSet rs = session.selectForUpdate.executeQuery()) {
+            rs.next();
+            age = rs.getInt(1);
+        }
+        session.update.setInt(1, age + 1);
+        session.update.setLong(2, id);
+        session.update.executeUpdate();
+        session.connection.commit();
+        return true;
+    }
+
+    private boolean updateOptimistic(Session session, long id) {
+        try {
+            session.select.setLong(1, id);
+            int age;
+            long version;
+            try (ResultSet rs = session.select.executeQuery()) {
+                rs.next();
+                age = rs.getInt(1);
+                version = rs.getLong(2);
+            }
+            session.updateVersioned.setInt(1, age + 1);
+            session.updateVersioned.setLong(2, id);
+            session.updateVersioned.setLong(3, version);
+            boolean updated = session.updateVersioned.executeUpdate() == 1;
+            if (!updated) {
+                session.connection.rollback();
+                throw new OptimisticLockingFailureException("Row " + id + " changed since version " + version);
+            }
+            session.connection.commit();
+            return true;
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
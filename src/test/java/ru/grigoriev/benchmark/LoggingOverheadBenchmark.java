@@ -0,0 +1,102 @@
+package ru.grigoriev.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.grigoriev.facade.UserDataFacade;
+import ru.grigoriev.web.request.UserBookRequest;
+import ru.grigoriev.web.response.UserBookResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Обновление пользователя с книгами через {@link UserDataFacade} (движки jdbc и jpa) при разных настройках логов:
+ * off - ru.grigoriev и org.hibernate.SQL на WARN, sync - INFO и SQL Hibernate на DEBUG в файл из потока запроса,
+ * async - то же через очередь, async-sampled - очередь и одно событие из 10 для service, facade и SQL Hibernate.
+ * Консоль отключена, файл пишется в target.
+ * Требует локальный PostgreSQL, см. {@link BenchmarkDatabase}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class LoggingOverheadBenchmark {
+    private static final int USERS = 200;
+    private static final Map<String, List<String>> MODES = Map.of(
+            "off", List.of(),
+            "sync", List.of(),
+            "async", List.of("logging-pipeline.async.enabled=true"),
+            "async-sampled", List.of("logging-pipeline.async.enabled=true",
+                    "logging-pipeline.sampling.[ru.grigoriev.service].info=10",
+                    "logging-pipeline.sampling.[ru.grigoriev.facade].info=10",
+                    "logging-pipeline.sampling.[org.hibernate.SQL].debug=10"));
+
+    @Param({"jdbc", "jpa"})
+    String engine;
+
+    @Param({"off", "sync", "async", "async-sampled"})
+    String mode;
+
+    ConfigurableApplicationContext context;
+    UserDataFacade facade;
+    long[] userIds;
+    UserBookRequest[][] updateRequests;
+
+    @Setup
+    public void setUp() {
+        List<String> properties = new ArrayList<>(List.of(
+                "persistence.engine=" + engine,
+                "logging.level.ru.grigoriev=" + ("off".equals(mode) ? "WARN" : "INFO"),
+                "logging.level.org.hibernate.SQL=" + ("off".equals(mode) ? "WARN" : "DEBUG"),
+                "logging.pattern.console=",
+                "logging.file.name=target/logging-benchmark-" + engine + "-" + mode + ".log"));
+        properties.addAll(MODES.get(mode));
+        context = BenchmarkApplication.start(properties.toArray(String[]::new));
+        facade = context.getBean(UserDataFacade.class);
+        userIds = new long[USERS];
+        updateRequests = new UserBookRequest[USERS][];
+        for (int i = 0; i < USERS; i++) {
+            UserBookRequest request = PersistenceEngineBenchmark.request("user " + i, "book");
+            userIds[i] = facade.createUserWithBooks(request).getUserId();
+            String title = request.getUserRequest().getTitle();
+            updateRequests[i] = new UserBookRequest[]{
+                    PersistenceEngineBenchmark.request("updated user " + i, title, "book"),
+                    PersistenceEngineBenchmark.request("updated user " + i, title, "other book")
+            };
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (long userId : userIds) {
+            facade.deleteUserWithBooks(userId);
+        }
+        context.close();
+    }
+
+    /**
+     * Запросы чередуют два набора книг, поэтому каждое обновление пишет события про удаление и вставку книг.
+     */
+    @Benchmark
+    public UserBookResponse update() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int user = random.nextInt(USERS);
+        return facade.updateUserWithBooks(userIds[user], updateRequests[user][random.nextInt(2)]);
+    }
+}
@@ -0,0 +1,161 @@
+package ru.grigoriev.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.grigoriev.config.CacheConfig;
+import ru.grigoriev.facade.UserDataFacade;
+import ru.grigoriev.web.request.BookRequest;
+import ru.grigoriev.web.request.UserBookRequest;
+import ru.grigoriev.web.request.UserRequest;
+import ru.grigoriev.web.response.UserBookResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Создание, чтение, обновление и удаление пользователя с книгами через {@link UserDataFacade}
+ * на каждом движке (persistence.engine) против одной и той же локальной базы.
+ * Чтение вызывает {@link UserDataFacade#getUserWithBooks(Long)}, предварительно удаляя ответ из кэша: замеряется загрузка
+ * пользователя с книгами, а не попадание в кэш. Скорость выделения памяти
+ * печатает профайлер gc: -Dbenchmark="PersistenceEngine -prof gc". Требует локальный PostgreSQL, см. {@link BenchmarkDatabase}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class PersistenceEngineBenchmark {
+    private static final int USERS = 1000;
+    private static final int BOOKS_PER_USER = 5;
+
+    @Param({"jpa", "jdbc", "data-jdbc"})
+    String engine;
+
+    ConfigurableApplicationContext context;
+    UserDataFacade facade;
+    Cache userBooksCache;
+    long[] userIds;
+    UserBookRequest[][] updateRequests;
+    final List<Long> createdUserIds = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start("persistence.engine=" + engine);
+        String activeEngine = context.getEnvironment().getProperty("persistence.engine");
+        if (!engine.equals(activeEngine)) {
+            context.close();
+            throw new IllegalStateException("Benchmark for " + engine + " started with persistence.engine=" + activeEngine);
+        }
+        facade = context.getBean(UserDataFacade.class);
+        userBooksCache = context.getBean(CacheManager.class).getCache(CacheConfig.USER_BOOKS_CACHE);
+        userIds = new long[USERS];
+        updateRequests = new UserBookRequest[USERS][];
+        for (int i = 0; i < USERS; i++) {
+            UserBookRequest request = request("user " + i, "book");
+            userIds[i] = facade.createUserWithBooks(request).getUserId();
+            String title = request.getUserRequest().getTitle();
+            updateRequests[i] = new UserBookRequest[]{
+                    request("updated user " + i, title, "book"),
+                    request("updated user " + i, title, "other book")
+            };
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        createdUserIds.forEach(facade::deleteUserWithBooks);
+        for (long userId : userIds) {
+            facade.deleteUserWithBooks(userId);
+        }
+        context.close();
+    }
+
+    @Benchmark
+    public UserBookResponse create() {
+        UserBookResponse response = facade.createUserWithBooks(request("created user", "book"));
+        createdUserIds.add(response.getUserId());
+        return response;
+    }
+
+    @Benchmark
+    public UserBookResponse get() {
+        long userId = userIds[ThreadLocalRandom.current().nextInt(USERS)];
+        userBooksCache.evict(userId);
+        return facade.getUserWithBooks(userId);
+    }
+
+    /**
+     * Запросы чередуют два набора книг, поэтому каждое обновление удаляет и вставляет книги.
+     */
+    @Benchmark
+    public UserBookResponse update() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int user = random.nextInt(USERS);
+        return facade.updateUserWithBooks(userIds[user], updateRequests[user][random.nextInt(2)]);
+    }
+
+    @Benchmark
+    public long delete(UserToDelete userToDelete) {
+        facade.deleteUserWithBooks(userToDelete.userId);
+        return userToDelete.userId;
+    }
+
+    /**
+     * Удаляемый пользователь создается до замера. Удаление длится миллисекунды, поэтому Level.Invocation допустим.
+     */
+    @State(Scope.Thread)
+    public static class UserToDelete {
+        long userId;
+
+        @Setup(Level.Invocation)
+        public void setUp(PersistenceEngineBenchmark benchmark) {
+            userId = benchmark.facade.createUserWithBooks(request("deleted user", "book")).getUserId();
+        }
+    }
+
+    /**
+     * Должность пользователя уникальна в таблице person и не длиннее 30 символов (UserDto).
+     */
+    static UserBookRequest request(String fullName, String bookTitle) {
+        return request(fullName, UUID.randomUUID().toString().replace("-", "").substring(0, 30), bookTitle);
+    }
+
+    static UserBookRequest request(String fullName, String title, String bookTitle) {
+        UserRequest userRequest = new UserRequest();
+        userRequest.setFullName(fullName);
+        userRequest.setTitle(title);
+        userRequest.setAge(30);
+
+        List<BookRequest> bookRequests = new ArrayList<>(BOOKS_PER_USER);
+        for (int i = 0; i < BOOKS_PER_USER; i++) {
+            BookRequest bookRequest = new BookRequest();
+            bookRequest.setTitle(bookTitle + " " + i);
+            bookRequest.setAuthor("author");
+            bookRequest.setPageCount(100 + i);
+            bookRequests.add(bookRequest);
+        }
+
+        UserBookRequest request = new UserBookRequest();
+        request.setUserRequest(userRequest);
+        request.setBookRequests(bookRequests);
+        return request;
+    }
+}
@@ -0,0 +1,106 @@
+package ru.grigoriev.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.grigoriev.facade.UserDataFacade;
+import ru.grigoriev.web.constant.WebConstant;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Нагрузка на UserController от {@link #CLIENTS} клиентов при пуле Hikari из {@link #POOL_SIZE} соединений:
+ * потоки Tomcat (platform) против виртуальных потоков (virtual-threads.enabled).
+ * Клиенты читают страницы пользователей и книги пользователя мимо кэша фасада, поэтому каждый запрос занимает соединение.
+ * Throughput печатает пропускную способность, SampleTime - p99. Режим virtual требует Java 21
+ * ({@code mvn -Pjava21,benchmark ...}), на Java 17 его форк завершается ошибкой старта.
+ * Требует локальный PostgreSQL, см. {@link BenchmarkDatabase}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(ThreadModeLoadBenchmark.CLIENTS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ThreadModeLoadBenchmark {
+    static final int CLIENTS = 256;
+    private static final int POOL_SIZE = 10;
+    private static final int USERS = 200;
+
+    @Param({"platform", "virtual"})
+    String mode;
+
+    ConfigurableApplicationContext context;
+    UserDataFacade facade;
+    HttpClient client;
+    String baseUrl;
+    long[] userIds;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.startWeb(
+                "virtual-threads.enabled=" + "virtual".equals(mode),
+                "virtual-threads.pool-size=" + POOL_SIZE,
+                "spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE,
+                "sql-statements.default-budget=" + Integer.MAX_VALUE);
+        facade = context.getBean(UserDataFacade.class);
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port")
+                + "/app" + WebConstant.VERSION_URL + "/user";
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        userIds = new long[USERS];
+        for (int i = 0; i < USERS; i++) {
+            userIds[i] = facade.createUserWithBooks(PersistenceEngineBenchmark.request("load user " + i, "book"))
+                    .getUserId();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (long userId : userIds) {
+            facade.deleteUserWithBooks(userId);
+        }
+        context.close();
+    }
+
+    @Benchmark
+    public int listUsers() throws IOException, InterruptedException {
+        return send("/list?limit=" + USERS);
+    }
+
+    @Benchmark
+    public int getUserBooks() throws IOException, InterruptedException {
+        return send("/" + userIds[ThreadLocalRandom.current().nextInt(USERS)] + "/books?limit=100");
+    }
+
+    private int send(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header(WebConstant.RQID, "load")
+                .GET()
+                .build();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode() + " for " + path);
+        }
+        return response.statusCode();
+    }
+}
@@ -0,0 +1,45 @@
+package ru.grigoriev.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Тестирование функционала {@link CacheConfig}.
+ */
+@DisplayName("Testing cache configuration.")
+public class CacheConfigTest {
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("Удаление из кэша внутри транзакции выполняется только после фиксации.")
+    void evictAfterCommit_Test() {
+        //given
+        CacheManager cacheManager = new CacheConfig().cacheManager(10, Duration.ofMinutes(1));
+        Cache cache = cacheManager.getCache(CacheConfig.USER_BOOKS_CACHE);
+        cache.put(1L, "cached");
+
+        //when
+        TransactionSynchronizationManager.initSynchronization();
+        cache.evict(1L);
+
+        //then
+        assertThat(cache.get(1L)).isNotNull();
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertThat(cache.get(1L)).isNull();
+    }
+}
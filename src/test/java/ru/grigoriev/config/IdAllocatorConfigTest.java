@@ -0,0 +1,58 @@
+package ru.grigoriev.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.grigoriev.generator.IdAllocator;
+import ru.grigoriev.generator.IdAllocatorGenerator;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Тестирование функционала {@link IdAllocatorConfig} на последовательности базы данных.
+ * Изменение шага откатывается вместе с транзакцией теста.
+ */
+@SystemJpaTest
+@DisplayName("Testing id block allocation on the database sequence.")
+public class IdAllocatorConfigTest {
+    private static final String INCREMENT_SQL = "SELECT seqincrement FROM pg_sequence WHERE seqrelid = 'sequence'::regclass";
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    IdAllocator idAllocator;
+
+    @AfterEach
+    void tearDown() {
+        IdAllocatorGenerator.register(idAllocator);
+    }
+
+    @Test
+    @DisplayName("Уменьшение блока между выкладками не пересекает уже выданные id, шаг последовательности не уменьшается.")
+    void blockSizeDecrease_Test() {
+        //given
+        IdAllocatorConfig config = new IdAllocatorConfig();
+        IdAllocator largeBlocks = config.sequenceBlockIdAllocator(jdbcTemplate, 500);
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            ids.add(largeBlocks.nextId());
+        }
+
+        //when
+        IdAllocator smallBlocks = config.sequenceBlockIdAllocator(jdbcTemplate, 200);
+        for (int i = 0; i < 1000; i++) {
+            ids.add(smallBlocks.nextId());
+            ids.add(largeBlocks.nextId());
+        }
+
+        //then
+        assertThat(ids).hasSize(3000);
+        assertThat(jdbcTemplate.queryForObject(INCREMENT_SQL, Long.class)).isEqualTo(500);
+    }
+}
@@ -0,0 +1,66 @@
+package ru.grigoriev.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.concurrent.ExecutorService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Тестирование функционала {@link VirtualThreadConfig}.
+ */
+@DisplayName("Testing virtual thread configuration.")
+public class VirtualThreadConfigTest {
+
+    @Test
+    @DisplayName("Драйвер PostgreSQL до 42.6 закрепляет виртуальные потоки, приложение не стартует.")
+    void requireNonPinningDriver_Test() {
+        //then
+        assertThatThrownBy(() -> VirtualThreadConfig.requireNonPinningDriver(42, 5))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("pins virtual threads");
+        assertThatCode(() -> VirtualThreadConfig.requireNonPinningDriver(42, 6)).doesNotThrowAnyException();
+        assertThatCode(() -> VirtualThreadConfig.requireNonPinningDriver(43, 0)).doesNotThrowAnyException();
+    }
+
+    @Test
+    @DisplayName("Виртуальные потоки доступны только на Java 21.")
+    void newVirtualThreadPerTaskExecutor_Test() {
+        //given
+        boolean supported = Runtime.version().feature() >= 21;
+
+        //then
+        if (!supported) {
+            assertThatThrownBy(VirtualThreadConfig::newVirtualThreadPerTaskExecutor)
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("Java 21");
+            return;
+        }
+        ExecutorService executor = VirtualThreadConfig.newVirtualThreadPerTaskExecutor();
+        executor.shutdown();
+        assertThat(executor.isShutdown()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Пул Hikari получает фиксированный размер и тайм-аут ожидания соединения.")
+    void virtualThreadPoolSizing_Test() {
+        //given
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("virtual-threads.pool-size", "20")
+                .withProperty("virtual-threads.connection-timeout", "2s");
+        HikariDataSource dataSource = new HikariDataSource();
+
+        //when
+        VirtualThreadConfig.virtualThreadPoolSizing(environment).postProcessAfterInitialization(dataSource, "dataSource");
+
+        //then
+        assertThat(dataSource.getMaximumPoolSize()).isEqualTo(20);
+        assertThat(dataSource.getMinimumIdle()).isEqualTo(20);
+        assertThat(dataSource.getConnectionTimeout()).isEqualTo(2000);
+    }
+}
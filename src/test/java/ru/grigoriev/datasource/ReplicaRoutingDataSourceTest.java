@@ -0,0 +1,124 @@
+package ru.grigoriev.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Тестирование функционала {@link ReplicaRoutingDataSource}.
+ */
+@DisplayName("Testing replica routing functionality.")
+public class ReplicaRoutingDataSourceTest {
+    DataSource primary = mock(DataSource.class);
+    DataSource firstReplica = mock(DataSource.class);
+    DataSource secondReplica = mock(DataSource.class);
+    Connection primaryConnection = mock(Connection.class);
+    Connection firstReplicaConnection = mock(Connection.class);
+    Connection secondReplicaConnection = mock(Connection.class);
+    AtomicReference<Duration> secondReplicaLag = new AtomicReference<>(Duration.ZERO);
+
+    ReplicaRoutingDataSource routingDataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(firstReplica.getConnection()).thenReturn(firstReplicaConnection);
+        when(secondReplica.getConnection()).thenReturn(secondReplicaConnection);
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-0", firstReplica);
+        replicas.put("replica-1", secondReplica);
+        routingDataSource = new ReplicaRoutingDataSource(primary, replicas, Duration.ofSeconds(5), Duration.ofHours(1),
+                replica -> replica == secondReplica ? secondReplicaLag.get() : Duration.ZERO);
+        routingDataSource.afterPropertiesSet();
+        routingDataSource.checkReplicas();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        routingDataSource.destroy();
+    }
+
+    @Test
+    @DisplayName("Read-only транзакции распределяются по репликам, остальные идут в основную базу.")
+    void getConnection_Test() throws SQLException {
+        assertThat(routingDataSource.getConnection()).isSameAs(primaryConnection);
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertThat(routingDataSource.getConnection()).isSameAs(firstReplicaConnection);
+        assertThat(routingDataSource.getConnection()).isSameAs(secondReplicaConnection);
+        assertThat(routingDataSource.getConnection()).isSameAs(firstReplicaConnection);
+    }
+
+    @Test
+    @DisplayName("Отстающая реплика исключается до следующей успешной проверки.")
+    void replicaLag_Test() throws SQLException {
+        //given
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        //when
+        secondReplicaLag.set(Duration.ofSeconds(30));
+        routingDataSource.checkReplicas();
+
+        //then
+        assertThat(routingDataSource.getConnection()).isSameAs(firstReplicaConnection);
+        assertThat(routingDataSource.getConnection()).isSameAs(firstReplicaConnection);
+        assertThat(routingDataSource.getReplicaStatus().get("replica-1")).startsWith("DOWN");
+
+        secondReplicaLag.set(Duration.ofSeconds(1));
+        routingDataSource.checkReplicas();
+        assertThat(routingDataSource.getReplicaStatus().get("replica-1")).startsWith("UP");
+    }
+
+    @Test
+    @DisplayName("Если реплика не выдала соединение, используется основная база.")
+    void replicaFailure_Test() throws SQLException {
+        //given
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        //when
+        when(firstReplica.getConnection()).thenThrow(new SQLException("connection refused"));
+        when(secondReplica.getConnection()).thenThrow(new SQLException("connection refused"));
+
+        //then
+        assertThat(routingDataSource.getConnection()).isSameAs(primaryConnection);
+        assertThat(routingDataSource.getConnection()).isSameAs(primaryConnection);
+        assertThat(routingDataSource.getConnection()).isSameAs(primaryConnection);
+        assertThat(routingDataSource.getReplicaStatus().values()).allMatch(status -> status.startsWith("DOWN"));
+    }
+
+    @Test
+    @DisplayName("Кэшируемое чтение в read-only транзакции идет в основную базу.")
+    void readFromPrimary_Test() throws SQLException {
+        //given
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        //when
+        Connection connection = ReplicaRoutingDataSource.readFromPrimary(() -> {
+            try {
+                return routingDataSource.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        //then
+        assertThat(connection).isSameAs(primaryConnection);
+        assertThat(routingDataSource.getConnection()).isSameAs(firstReplicaConnection);
+    }
+}
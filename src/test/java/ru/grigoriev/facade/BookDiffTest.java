@@ -0,0 +1,83 @@
+package ru.grigoriev.facade;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.grigoriev.dto.BookDto;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Тестирование функционала {@link BookDiff}.
+ */
+@DisplayName("Testing book diff functionality.")
+public class BookDiffTest {
+
+    @Test
+    @DisplayName("Разделение книг на добавляемые, неизменные и удаляемые.")
+    void calculate_Test() {
+        //given
+        BookDto storedKept = book(1L, "kept title", "kept author", 100);
+        BookDto storedRemoved = book(2L, "removed title", "removed author", 200);
+        BookDto requestedKept = book(null, "kept title", "kept author", 100);
+        BookDto requestedNew = book(null, "new title", "new author", 300);
+
+        //when
+        BookDiff bookDiff = BookDiff.calculate(List.of(requestedKept, requestedNew), List.of(storedKept, storedRemoved));
+
+        //then
+        assertThat(bookDiff.getToInsert()).containsExactly(requestedNew);
+        assertThat(bookDiff.getUnchanged()).extracting(BookDto::getId).containsExactly(1L);
+        assertThat(bookDiff.getToDelete()).extracting(BookDto::getId).containsExactly(2L);
+    }
+
+    @Test
+    @DisplayName("Одинаковые книги считаются поштучно: в базе остается столько копий, сколько в запросе.")
+    void calculateWithDuplicates_Test() {
+        //given
+        BookDto storedFirst = book(1L, "title", "author", 100);
+        BookDto storedDuplicate = book(2L, "title", "author", 100);
+        BookDto storedExtra = book(3L, "title", "author", 100);
+        BookDto requestedNew = book(null, "new title", "new author", 300);
+        BookDto requestedNewDuplicate = book(null, "new title", "new author", 300);
+        BookDto requestedKept = book(null, "title", "author", 100);
+        BookDto requestedKeptDuplicate = book(null, "title", "author", 100);
+
+        //when
+        BookDiff bookDiff = BookDiff.calculate(List.of(requestedNew, requestedNewDuplicate, requestedKept, requestedKeptDuplicate),
+                List.of(storedFirst, storedDuplicate, storedExtra));
+
+        //then
+        assertThat(bookDiff.getToInsert()).containsExactly(requestedNew, requestedNewDuplicate);
+        assertThat(bookDiff.getUnchanged()).extracting(BookDto::getId).containsExactly(1L, 2L);
+        assertThat(bookDiff.getToDelete()).extracting(BookDto::getId).containsExactly(3L);
+    }
+
+    @Test
+    @DisplayName("Повторный запрос с дубликатами после создания не меняет книги пользователя.")
+    void calculateSameRequestWithDuplicates_Test() {
+        //given
+        BookDto storedFirst = book(1L, "title", "author", 100);
+        BookDto storedDuplicate = book(2L, "title", "author", 100);
+        BookDto requested = book(null, "title", "author", 100);
+        BookDto requestedDuplicate = book(null, "title", "author", 100);
+
+        //when
+        BookDiff bookDiff = BookDiff.calculate(List.of(requested, requestedDuplicate), List.of(storedFirst, storedDuplicate));
+
+        //then
+        assertThat(bookDiff.getToInsert()).isEmpty();
+        assertThat(bookDiff.getUnchanged()).extracting(BookDto::getId).containsExactly(1L, 2L);
+        assertThat(bookDiff.getToDelete()).isEmpty();
+    }
+
+    private BookDto book(Long id, String title, String author, long pageCount) {
+        BookDto bookDto = new BookDto();
+        bookDto.setId(id);
+        bookDto.setTitle(title);
+        bookDto.setAuthor(author);
+        bookDto.setPageCount(pageCount);
+        return bookDto;
+    }
+}
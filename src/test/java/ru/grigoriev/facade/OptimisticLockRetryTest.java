@@ -0,0 +1,71 @@
+package ru.grigoriev.facade;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Тестирование функционала {@link OptimisticLockRetry}.
+ */
+@DisplayName("Testing optimistic lock retry functionality.")
+public class OptimisticLockRetryTest {
+
+    @Test
+    @DisplayName("Повтор после конфликта версий, не больше заданного числа попыток.")
+    void execute_Test() {
+        //given
+        OptimisticLockRetry retry = new OptimisticLockRetry(3, Duration.ZERO, Duration.ZERO);
+        AtomicInteger attempts = new AtomicInteger();
+
+        //when
+        String result = retry.execute(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new OptimisticLockingFailureException("conflict");
+            }
+            return "updated";
+        });
+
+        //then
+        assertThat(result).isEqualTo("updated");
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    @DisplayName("Попытки исчерпаны или ошибка не связана с конфликтом версий.")
+    void execute_FailTest() {
+        //given
+        OptimisticLockRetry retry = new OptimisticLockRetry(2, Duration.ZERO, Duration.ZERO);
+        AtomicInteger attempts = new AtomicInteger();
+
+        //then
+        assertThatThrownBy(() -> retry.execute(() -> {
+            attempts.incrementAndGet();
+            throw new OptimisticLockingFailureException("conflict");
+        })).isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(attempts).hasValue(2);
+
+        assertThatThrownBy(() -> retry.execute(() -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("not a conflict");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    @DisplayName("Задержка растет экспоненциально и ограничена сверху.")
+    void backoff_Test() {
+        //given
+        OptimisticLockRetry retry = new OptimisticLockRetry(10, Duration.ofMillis(20), Duration.ofMillis(100));
+
+        //then
+        assertThat(retry.backoffMillis(1)).isBetween(10L, 20L);
+        assertThat(retry.backoffMillis(2)).isBetween(20L, 40L);
+        assertThat(retry.backoffMillis(8)).isBetween(50L, 100L);
+    }
+}
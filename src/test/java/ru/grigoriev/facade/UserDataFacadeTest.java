@@ -0,0 +1,325 @@
+package ru.grigoriev.facade;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.grigoriev.dto.UserDto;
+import ru.grigoriev.entity.Person;
+import ru.grigoriev.exception.NotFoundException;
+import ru.grigoriev.mapper.BookMapper;
+import ru.grigoriev.mapper.UserMapper;
+import ru.grigoriev.service.BookService;
+import ru.grigoriev.service.UserBookExportService;
+import ru.grigoriev.service.UserBookImportService;
+import ru.grigoriev.service.UserService;
+import ru.grigoriev.web.request.UserBookRequest;
+import ru.grigoriev.web.request.UserRequest;
+import ru.grigoriev.web.response.PageResponse;
+import ru.grigoriev.web.response.UserBookBatchItemResponse;
+import ru.grigoriev.web.response.UserBookResponse;
+
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестирование функционала {@link UserDataFacade}.
+ */
+@ActiveProfiles("test")
+@ExtendWith(SpringExtension.class)
+@DisplayName("Testing user data facade functionality.")
+public class UserDataFacadeTest {
+    @Mock
+    UserService userService;
+
+    @Mock
+    BookService bookService;
+
+    @Mock
+    UserMapper userMapper;
+
+    @Mock
+    BookMapper bookMapper;
+
+    @Mock
+    UserBookImportService userBookImportService;
+
+    @Mock
+    UserBookExportService userBookExportService;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    @Mock
+    Validator validator;
+
+    UserDataFacade userDataFacade;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        userDataFacade = new UserDataFacade(userService, bookService, userMapper, bookMapper,
+                userBookImportService, userBookExportService, new TransactionTemplate(transactionManager),
+                new OptimisticLockRetry(3, Duration.ZERO, Duration.ZERO), validator, 2);
+    }
+
+    @Test
+    @DisplayName("Пакетное создание пользователей. Транзакция фиксируется на каждую порцию.")
+    void createUsersWithBooks_Test() {
+        //given
+        List<UserBookRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            requests.add(userBookRequest());
+        }
+        UserBookRequest invalidRequest = new UserBookRequest();
+        requests.add(invalidRequest);
+
+        UserDto userDto = new UserDto();
+        UserDto createdUser = new UserDto();
+        createdUser.setId(1L);
+
+        //when
+        when(userMapper.userRequestToUserDto(any(UserRequest.class))).thenReturn(userDto);
+        when(userService.createUser(userDto)).thenReturn(createdUser);
+        when(bookService.createBooks(any())).thenReturn(List.of());
+
+        //then
+        List<UserBookBatchItemResponse> result = userDataFacade.createUsersWithBooks(requests);
+        assertThat(result).hasSize(4);
+        assertThat(result).extracting(UserBookBatchItemResponse::getIndex).containsExactly(0, 1, 2, 3);
+        assertThat(result.subList(0, 3)).allSatisfy(item -> {
+            assertThat(item.getErrorMessage()).isNull();
+            assertThat(item.getResponse().getUserId()).isEqualTo(1L);
+        });
+        assertThat(result.get(3).getResponse()).isNull();
+        assertThat(result.get(3).getErrorMessage()).isEqualTo("Invalid request, missing user data!");
+        verify(transactionManager, times(2)).commit(any());
+        verify(userService, times(3)).createUser(userDto);
+    }
+
+    @Test
+    @DisplayName("Пакетное создание пользователей. Нарушение ограничений DTO отклоняет только свой запрос.")
+    void createUsersWithBooks_ConstraintViolationTest() {
+        //given
+        userDataFacade = new UserDataFacade(userService, bookService, userMapper, bookMapper,
+                userBookImportService, userBookExportService, new TransactionTemplate(transactionManager),
+                new OptimisticLockRetry(3, Duration.ZERO, Duration.ZERO),
+                Validation.buildDefaultValidatorFactory().getValidator(), 2);
+        UserRequest tooYoung = new UserRequest();
+        List<UserBookRequest> requests = List.of(userBookRequest(), userBookRequest(tooYoung));
+
+        UserDto createdUser = new UserDto();
+        createdUser.setId(1L);
+
+        //when
+        when(userMapper.userRequestToUserDto(any(UserRequest.class)))
+                .thenAnswer(invocation -> userDto(invocation.getArgument(0) == tooYoung ? 3 : 30));
+        when(userService.createUser(any(UserDto.class))).thenReturn(createdUser);
+        when(bookService.createBooks(any())).thenReturn(List.of());
+
+        //then
+        List<UserBookBatchItemResponse> result = userDataFacade.createUsersWithBooks(requests);
+        assertThat(result.get(0).getErrorMessage()).isNull();
+        assertThat(result.get(0).getResponse().getUserId()).isEqualTo(1L);
+        assertThat(result.get(1).getResponse()).isNull();
+        assertThat(result.get(1).getErrorMessage()).contains("Age should be over six");
+        verify(userService, times(1)).createUser(any(UserDto.class));
+        verify(transactionManager, never()).rollback(any());
+    }
+
+    @Test
+    @DisplayName("Пакетное создание пользователей. Пропущенный элемент отклоняется, остальные создаются.")
+    void createUsersWithBooks_MissingItemTest() {
+        //given
+        List<UserBookRequest> requests = new ArrayList<>();
+        requests.add(null);
+        requests.add(userBookRequest());
+
+        UserDto userDto = new UserDto();
+        UserDto createdUser = new UserDto();
+        createdUser.setId(1L);
+
+        //when
+        when(userMapper.userRequestToUserDto(any(UserRequest.class))).thenReturn(userDto);
+        when(userService.createUser(userDto)).thenReturn(createdUser);
+        when(bookService.createBooks(any())).thenReturn(List.of());
+
+        //then
+        List<UserBookBatchItemResponse> result = userDataFacade.createUsersWithBooks(requests);
+        assertThat(result.get(0).getResponse()).isNull();
+        assertThat(result.get(0).getErrorMessage()).isEqualTo("The request is invalid, the item is missing");
+        assertThat(result.get(1).getErrorMessage()).isNull();
+        verify(userService, times(1)).createUser(userDto);
+    }
+
+    @Test
+    @DisplayName("Пакетное создание пользователей. Ошибка откатывает только свою порцию.")
+    void createUsersWithBooks_FailTest() {
+        //given
+        List<UserBookRequest> requests = List.of(userBookRequest(), userBookRequest(), userBookRequest());
+
+        UserDto userDto = new UserDto();
+        UserDto createdUser = new UserDto();
+        createdUser.setId(1L);
+
+        //when
+        when(userMapper.userRequestToUserDto(any(UserRequest.class))).thenReturn(userDto);
+        when(userService.createUser(userDto))
+                .thenThrow(new IllegalStateException("duplicate key"))
+                .thenReturn(createdUser);
+        when(bookService.createBooks(any())).thenReturn(List.of());
+
+        //then
+        List<UserBookBatchItemResponse> result = userDataFacade.createUsersWithBooks(requests);
+        assertThat(result.subList(0, 2)).allSatisfy(item -> {
+            assertThat(item.getResponse()).isNull();
+            assertThat(item.getErrorMessage()).isEqualTo("duplicate key");
+        });
+        assertThat(result.get(2).getResponse().getUserId()).isEqualTo(1L);
+        verify(transactionManager, times(1)).rollback(any());
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    @DisplayName("Обновление пользователя повторяется в новой транзакции после конфликта версий.")
+    void updateUserWithBooks_RetryTest() {
+        //given
+        UserDto requestedUser = new UserDto();
+        UserDto storedUser = new UserDto();
+        storedUser.setId(1L);
+        storedUser.setVersion(5L);
+
+        //when
+        when(userMapper.userRequestToUserDto(any(UserRequest.class))).thenReturn(requestedUser);
+        when(userService.getUserById(1L)).thenReturn(storedUser);
+        when(userMapper.userDtoToUpdateToUserDto(requestedUser)).thenAnswer(invocation -> new UserDto());
+        when(userService.updateUser(any()))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Person.class, 1L))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        //then
+        assertThat(userDataFacade.updateUserWithBooks(1L, userBookRequest()).getUserId()).isEqualTo(1L);
+        verify(userService, times(2)).updateUser(argThat(userDto -> userDto.getVersion() == 5L));
+        verify(transactionManager, times(1)).rollback(any());
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    @DisplayName("Ответ с книгами несет версию пользователя, прочитанную до книг, но не отдает ее в теле.")
+    void getUserWithBooks_Test() throws Exception {
+        //when
+        when(userService.getUserVersion(1L)).thenReturn(4L);
+        when(userService.getBookIdsByIdUser(1L)).thenReturn(new long[]{10L, 20L});
+
+        //then
+        UserBookResponse response = userDataFacade.getUserWithBooks(1L);
+        assertThat(response.getVersion()).isEqualTo(4L);
+        assertThat(response.getBooksIdList()).containsExactly(10L, 20L);
+        assertThat(new ObjectMapper().writeValueAsString(response)).doesNotContain("version");
+
+        InOrder inOrder = inOrder(userService);
+        inOrder.verify(userService).getUserVersion(1L);
+        inOrder.verify(userService).getBookIdsByIdUser(1L);
+    }
+
+    @Test
+    @DisplayName("Keyset-пагинация книг пользователя. Курсор ведет на следующую страницу.")
+    void getUserBooks_Test() {
+        //when
+        when(bookService.getBookIdsByIdUserAfter(1L, Long.MIN_VALUE, 3)).thenReturn(List.of(10L, 20L, 30L));
+        when(bookService.getBookIdsByIdUserAfter(1L, 20L, 3)).thenReturn(List.of(30L));
+
+        //then
+        PageResponse<Long> firstPage = userDataFacade.getUserBooks(1L, null, 2);
+        assertThat(firstPage.getItems()).containsExactly(10L, 20L);
+        assertThat(firstPage.getNextCursor()).isNotNull();
+
+        PageResponse<Long> lastPage = userDataFacade.getUserBooks(1L, firstPage.getNextCursor(), 2);
+        assertThat(lastPage.getItems()).containsExactly(30L);
+        assertThat(lastPage.getNextCursor()).isNull();
+    }
+
+    @Test
+    @DisplayName("Попытка пагинации с некорректным курсором или лимитом.")
+    void getUserBooks_FailTest() {
+        assertThatThrownBy(() -> userDataFacade.getUserBooks(1L, "not a cursor", 2))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessage("Invalid page cursor");
+        assertThatThrownBy(() -> userDataFacade.getUserBooks(1L, null, UserDataFacade.MAX_PAGE_LIMIT + 1))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    @DisplayName("Получение нескольких пользователей с книгами за два запроса.")
+    void getUsersWithBooks_Test() {
+        //given
+        UserDto firstUser = new UserDto();
+        firstUser.setId(1L);
+        UserDto secondUser = new UserDto();
+        secondUser.setId(2L);
+
+        //when
+        when(userService.getUsersByIds(Set.of(2L, 1L, 3L))).thenReturn(List.of(firstUser, secondUser));
+        when(bookService.getBookIdsByIdUsers(Set.of(1L, 2L))).thenReturn(Map.of(1L, List.of(10L, 11L)));
+
+        //then
+        List<UserBookResponse> result = userDataFacade.getUsersWithBooks(List.of(2L, 1L, 3L, 2L));
+        assertThat(result).extracting(UserBookResponse::getUserId).containsExactly(2L, 1L);
+        assertThat(result.get(0).getBooksIdList()).isEmpty();
+        assertThat(result.get(1).getBooksIdList()).containsExactly(10L, 11L);
+        verify(userService, never()).getBookIdsByIdUser(any());
+    }
+
+    @Test
+    @DisplayName("Попытка получения пользователей по пустому или слишком длинному списку id.")
+    void getUsersWithBooks_FailTest() {
+        List<Long> tooManyIds = new ArrayList<>();
+        for (long id = 0; id <= UserDataFacade.MAX_PAGE_LIMIT; id++) {
+            tooManyIds.add(id);
+        }
+
+        assertThatThrownBy(() -> userDataFacade.getUsersWithBooks(List.of()))
+                .isInstanceOf(NotFoundException.class);
+        assertThatThrownBy(() -> userDataFacade.getUsersWithBooks(tooManyIds))
+                .isInstanceOf(NotFoundException.class);
+        verifyNoInteractions(userService, bookService);
+    }
+
+    private UserBookRequest userBookRequest() {
+        return userBookRequest(new UserRequest());
+    }
+
+    private UserBookRequest userBookRequest(UserRequest userRequest) {
+        UserBookRequest userBookRequest = new UserBookRequest();
+        userBookRequest.setUserRequest(userRequest);
+        userBookRequest.setBookRequests(List.of());
+        return userBookRequest;
+    }
+
+    private UserDto userDto(int age) {
+        UserDto userDto = new UserDto();
+        userDto.setFullName("Ivan Ivanov");
+        userDto.setTitle("Engineer");
+        userDto.setAge(age);
+        return userDto;
+    }
+}
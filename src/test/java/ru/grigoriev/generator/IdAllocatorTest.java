@@ -0,0 +1,140 @@
+package ru.grigoriev.generator;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Тестирование функционала {@link SequenceBlockIdAllocator} и {@link SnowflakeIdAllocator}.
+ */
+@DisplayName("Testing id allocators.")
+public class IdAllocatorTest {
+
+    @Test
+    @DisplayName("Блок последовательности выдается без обращения к базе на каждый id.")
+    void sequenceBlock_Test() {
+        //given
+        AtomicLong sequence = new AtomicLong(400);
+        AtomicLong calls = new AtomicLong();
+        IdAllocator allocator = new SequenceBlockIdAllocator(() -> {
+            calls.incrementAndGet();
+            return sequence.getAndAdd(100);
+        }, 100);
+
+        //when
+        long first = allocator.nextId();
+        for (int i = 0; i < 98; i++) {
+            allocator.nextId();
+        }
+        long lastOfBlock = allocator.nextId();
+        long firstOfNextBlock = allocator.nextId();
+
+        //then
+        assertThat(first).isEqualTo(400);
+        assertThat(lastOfBlock).isEqualTo(499);
+        assertThat(firstOfNextBlock).isEqualTo(500);
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Блок меньше шага последовательности использует начало каждого значения и не пересекается с соседними.")
+    void sequenceBlock_SmallerBlockTest() {
+        //given
+        AtomicLong sequence = new AtomicLong(2000);
+        IdAllocator allocator = new SequenceBlockIdAllocator(() -> sequence.getAndAdd(500), 200);
+
+        //when
+        long first = allocator.nextId();
+        for (int i = 0; i < 198; i++) {
+            allocator.nextId();
+        }
+        long lastOfBlock = allocator.nextId();
+        long firstOfNextBlock = allocator.nextId();
+
+        //then
+        assertThat(first).isEqualTo(2000);
+        assertThat(lastOfBlock).isEqualTo(2199);
+        assertThat(firstOfNextBlock).isEqualTo(2500);
+    }
+
+    @Test
+    @DisplayName("Попытка создать аллокатор с пустым блоком.")
+    void sequenceBlock_FailTest() {
+        assertThatThrownBy(() -> new SequenceBlockIdAllocator(() -> 1L, 0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("positive");
+    }
+
+    @Test
+    @DisplayName("Блок запрашивается без монитора аллокатора, параллельные потоки получают разные id.")
+    void sequenceBlock_ConcurrentTest() throws InterruptedException {
+        //given
+        AtomicLong sequence = new AtomicLong(1);
+        Set<Boolean> monitorHeld = ConcurrentHashMap.newKeySet();
+        IdAllocator[] allocator = new IdAllocator[1];
+        allocator[0] = new SequenceBlockIdAllocator(() -> {
+            monitorHeld.add(Thread.holdsLock(allocator[0]));
+            return sequence.getAndAdd(100);
+        }, 100);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        //when
+        for (int thread = 0; thread < 8; thread++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    ids.add(allocator[0].nextId());
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        //then
+        assertThat(ids).hasSize(8000);
+        assertThat(sequence.get()).isEqualTo(8001);
+        assertThat(monitorHeld).containsOnly(false);
+    }
+
+    @Test
+    @DisplayName("Snowflake id положительны и растут внутри одной миллисекунды и между ними.")
+    void snowflake_Test() {
+        //given
+        AtomicLong clock = new AtomicLong(SnowflakeIdAllocator.EPOCH + 1000);
+        IdAllocator allocator = new SnowflakeIdAllocator(3, clock::get);
+
+        //when
+        long previous = allocator.nextId();
+        boolean increasing = true;
+        for (int i = 0; i < SnowflakeIdAllocator.SEQUENCE_MASK; i++) {
+            long next = allocator.nextId();
+            increasing &= next > previous;
+            previous = next;
+        }
+        clock.incrementAndGet();
+        long nextMillisecond = allocator.nextId();
+
+        //then
+        assertThat(increasing).isTrue();
+        assertThat(previous).isPositive();
+        assertThat(nextMillisecond).isGreaterThan(previous);
+        assertThat((nextMillisecond >> SnowflakeIdAllocator.SEQUENCE_BITS) & SnowflakeIdAllocator.MAX_NODE_ID)
+                .isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Попытка создать Snowflake аллокатор с некорректным номером узла.")
+    void snowflake_FailTest() {
+        assertThatThrownBy(() -> new SnowflakeIdAllocator(SnowflakeIdAllocator.MAX_NODE_ID + 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,108 @@
+package ru.grigoriev.logging;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.boot.logging.LogLevel;
+import ru.grigoriev.config.LoggingPipelineProperties;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Тестирование выборки и асинхронной записи в {@link LoggingPipeline}.
+ */
+@DisplayName("Testing sampled asynchronous logging pipeline.")
+public class LoggingPipelineTest {
+    private static final String SERVICE_LOGGER = "ru.grigoriev.service.impl";
+
+    private LoggerContext loggerContext;
+    private ListAppender<ILoggingEvent> appender;
+    private LoggingPipelineProperties properties;
+    private Logger root;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = new LoggerContext();
+        appender = new ListAppender<>();
+        appender.setContext(loggerContext);
+        appender.start();
+        root = loggerContext.getLogger(Logger.ROOT_LOGGER_NAME);
+        root.addAppender(appender);
+        properties = new LoggingPipelineProperties();
+    }
+
+    @AfterEach
+    void tearDown() {
+        MDC.clear();
+        loggerContext.stop();
+    }
+
+    @Test
+    @DisplayName("Пишется одно событие из N для логгера, его дочерних логгеров и уровня из правила.")
+    void sampling_Test() {
+        //given
+        properties.getSampling().put(SERVICE_LOGGER, Map.of(LogLevel.INFO, 10));
+        LoggingPipeline pipeline = new LoggingPipeline(loggerContext, properties);
+        pipeline.start();
+        Logger sampled = loggerContext.getLogger(SERVICE_LOGGER + ".BookServiceImpl");
+        Logger other = loggerContext.getLogger("ru.grigoriev.web.UserController");
+
+        //when
+        IntStream.range(0, 100).forEach(i -> sampled.info("Found books: {}", i));
+        IntStream.range(0, 5).forEach(i -> sampled.warn("Warning {}", i));
+        IntStream.range(0, 5).forEach(i -> other.info("Request {}", i));
+
+        //then
+        assertThat(appender.list).filteredOn(event -> event.getLoggerName().equals(sampled.getName()))
+                .hasSize(15);
+        assertThat(appender.list).filteredOn(event -> event.getLoggerName().equals(other.getName()))
+                .hasSize(5);
+
+        pipeline.destroy();
+        assertThat(loggerContext.getTurboFilterList()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Асинхронная запись доходит до каждого appender-а с requestId из MDC и возвращает их при остановке.")
+    void async_Test() {
+        //given
+        ListAppender<ILoggingEvent> fileAppender = new ListAppender<>();
+        fileAppender.setName("FILE");
+        fileAppender.setContext(loggerContext);
+        fileAppender.start();
+        root.addAppender(fileAppender);
+        appender.setName("CONSOLE");
+        properties.getAsync().setEnabled(true);
+        LoggingPipeline pipeline = new LoggingPipeline(loggerContext, properties);
+        pipeline.start();
+        MDC.put("requestId", "rq-1");
+
+        //when
+        loggerContext.getLogger(SERVICE_LOGGER).info("Created user {}", 1L);
+        MDC.clear();
+
+        //then
+        assertThat(root.getAppender(LoggingPipeline.ASYNC_APPENDER_PREFIX + "CONSOLE")).isNotNull();
+        assertThat(root.getAppender(LoggingPipeline.ASYNC_APPENDER_PREFIX + "FILE")).isNotNull();
+        assertThat(root.isAttached(appender)).isFalse();
+
+        pipeline.destroy();
+        for (ListAppender<ILoggingEvent> listAppender : List.of(appender, fileAppender)) {
+            assertThat(listAppender.list).singleElement()
+                    .satisfies(event -> assertThat(event.getMDCPropertyMap()).containsEntry("requestId", "rq-1"));
+            assertThat(root.isAttached(listAppender)).isTrue();
+            assertThat(listAppender.isStarted()).isTrue();
+        }
+        assertThat(root.getAppender(LoggingPipeline.ASYNC_APPENDER_PREFIX + "CONSOLE")).isNull();
+    }
+}
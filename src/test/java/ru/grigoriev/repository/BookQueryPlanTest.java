@@ -0,0 +1,289 @@
+package ru.grigoriev.repository;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jdbc.repository.config.AbstractJdbcConfiguration;
+import org.springframework.data.jdbc.repository.config.EnableJdbcRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.context.jdbc.Sql;
+import ru.grigoriev.config.SystemJpaTest;
+import ru.grigoriev.entity.Book;
+import ru.grigoriev.generator.IdAllocator;
+import ru.grigoriev.service.impl.BookServiceImplTemplate;
+import ru.grigoriev.service.impl.UserServiceImplTemplate;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Планы запросов {@link BookRepository}, {@link UserRepository} и JdbcTemplate-сервисов по книгам пользователя.
+ * Метод вызывается на самом деле, а его SQL с параметрами перехватывает datasource-proxy тестового источника данных,
+ * поэтому план строится для того запроса, который отправляет приложение.
+ * Каждый запрос должен использовать индекс, а не последовательное чтение таблицы,
+ * а запрос книг одного пользователя - читать одну секцию myschema.book.
+ * Новый запрос репозитория или JdbcTemplate-сервиса добавляется в список первого теста,
+ * запрос книг по person_id - и в список второго. Запросы только по id книги (владелец неизвестен) секцию выбрать не могут.
+ */
+@SystemJpaTest
+@Import(BookQueryPlanTest.AggregateRepositoryConfig.class)
+public class BookQueryPlanTest {
+    private static final Pattern BOOK_PARTITION = Pattern.compile("\\bon (book_p\\d+)\\b");
+    private static final long USER_ID = 10500;
+    private static final List<Long> USER_BOOK_IDS = List.of(100499L, 101499L);
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    EntityManager entityManager;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    PersonAggregateRepository personAggregateRepository;
+
+    @Autowired
+    IdAllocator idAllocator;
+
+    private final StatementCapture capture = new StatementCapture();
+
+    @BeforeEach
+    void setUp() {
+        ((ProxyDataSource) dataSource).addListener(capture);
+        entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getCache().evictAllRegions();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ((ProxyDataSource) dataSource).getProxyConfig().getQueryListener().getListeners().remove(capture);
+    }
+
+    @DisplayName("Запрос репозитория не должен читать таблицу последовательно")
+    @ParameterizedTest
+    @Rollback
+    @Sql({"classpath:sql/1_clear_schema.sql",
+            "classpath:sql/4_insert_plan_data.sql"
+    })
+    @ValueSource(strings = {
+            "BookRepository.findAllByPersonId",
+            "BookRepository.streamAllByPersonId",
+            "BookRepository.findIdPageByPersonIdAfter",
+            "BookRepository.deleteAllByPersonId",
+            "BookRepository.deleteAllByPersonIdAndIdIn",
+            "BookRepository.findByIdForUpdate",
+            "BookRepository.findIdsByPersonIdIn",
+            "UserRepository.findBookIdsById",
+            "UserRepository.findVersionById",
+            "UserRepository.findAllByIdIn",
+            "UserRepository.findByIdForUpdate",
+            "UserRepository.findPageAfter",
+            "PersonAggregateRepository.findById",
+            "PersonAggregateRepository.save",
+            "PersonAggregateRepository.findSummariesByIdIn",
+            "PersonAggregateRepository.findSummaryPageAfter",
+            "PersonAggregateRepository.findVersionById",
+            "PersonAggregateRepository.findPersonIdsByBookIds",
+            "PersonAggregateRepository.findBookIdsByPersonIdIn",
+            "PersonAggregateRepository.findBookIdPageByPersonIdAfter",
+            "BookServiceImplTemplate.getBooksByIdUser",
+            "BookServiceImplTemplate.forEachBookByIdUser",
+            "BookServiceImplTemplate.getBookIdsByIdUserAfter",
+            "BookServiceImplTemplate.deleteBooksByIdUser",
+            "BookServiceImplTemplate.deleteBooksByIds",
+            "BookServiceImplTemplate.getBookIdsByIdUsers",
+            "UserServiceImplTemplate.getUserVersion",
+            "UserServiceImplTemplate.getBookIdsByIdUser",
+            "UserServiceImplTemplate.getUsersByIds",
+            "UserServiceImplTemplate.getUsersAfter"
+    })
+    void bookQuery_thenAssertNoSeqScan(String query) {
+        //When
+        List<List<String>> plans = explain(query);
+
+        //Then
+        assertThat(plans).allSatisfy(plan -> assertThat(plan)
+                .as(String.join("\n", plan))
+                .noneMatch(line -> line.contains("Seq Scan")));
+    }
+
+    @DisplayName("Запрос книг одного пользователя должен читать одну секцию")
+    @ParameterizedTest
+    @Rollback
+    @Sql({"classpath:sql/1_clear_schema.sql",
+            "classpath:sql/4_insert_plan_data.sql"
+    })
+    @ValueSource(strings = {
+            "BookRepository.findAllByPersonId",
+            "BookRepository.streamAllByPersonId",
+            "BookRepository.findIdPageByPersonIdAfter",
+            "BookRepository.deleteAllByPersonId",
+            "BookRepository.deleteAllByPersonIdAndIdIn",
+            "PersonAggregateRepository.findById",
+            "PersonAggregateRepository.save",
+            "PersonAggregateRepository.findBookIdPageByPersonIdAfter",
+            "BookServiceImplTemplate.getBooksByIdUser",
+            "BookServiceImplTemplate.forEachBookByIdUser",
+            "BookServiceImplTemplate.getBookIdsByIdUserAfter",
+            "BookServiceImplTemplate.deleteBooksByIdUser",
+            "BookServiceImplTemplate.deleteBooksByIds"
+    })
+    void bookQueryByPerson_thenAssertPartitionPruned(String query) {
+        //When
+        List<List<String>> bookPlans = explain(query).stream()
+                .filter(plan -> plan.stream().anyMatch(line -> BOOK_PARTITION.matcher(line).find()))
+                .toList();
+
+        //Then
+        assertThat(bookPlans).isNotEmpty().allSatisfy(plan -> assertThat(plan.stream()
+                .map(BOOK_PARTITION::matcher)
+                .filter(Matcher::find)
+                .map(matcher -> matcher.group(1))
+                .collect(Collectors.toSet()))
+                .as(String.join("\n", plan))
+                .hasSize(1));
+    }
+
+    /**
+     * Вызывает метод, перехватывает его SQL и строит план каждого запроса с теми же параметрами.
+     */
+    private List<List<String>> explain(String query) {
+        capture.statements.clear();
+        capture.enabled = true;
+        try {
+            execute(query);
+            entityManager.flush();
+        } finally {
+            capture.enabled = false;
+        }
+        assertThat(capture.statements).as("SQL of " + query).isNotEmpty();
+
+        List<List<String>> plans = new ArrayList<>();
+        for (QueryInfo statement : capture.statements) {
+            List<ParameterSetOperation> parameters = statement.getParametersList().isEmpty()
+                    ? List.of()
+                    : statement.getParametersList().get(0);
+            plans.add(jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement("EXPLAIN " + statement.getQuery());
+                for (ParameterSetOperation parameter : parameters) {
+                    try {
+                        parameter.getMethod().invoke(ps, parameter.getArgs());
+                    } catch (IllegalAccessException | InvocationTargetException e) {
+                        throw new IllegalStateException("Parameter of " + statement.getQuery() + " could not be replayed", e);
+                    }
+                }
+                return ps;
+            }, (rs, rowNum) -> rs.getString(1)));
+        }
+        return plans;
+    }
+
+    private void execute(String query) {
+        BookServiceImplTemplate bookServiceTemplate = new BookServiceImplTemplate(jdbcTemplate, idAllocator);
+        UserServiceImplTemplate userServiceTemplate = new UserServiceImplTemplate(jdbcTemplate, idAllocator);
+        List<Long> userIds = List.of(10100L, 10200L, 10300L);
+        switch (query) {
+            case "BookRepository.findAllByPersonId" -> bookRepository.findAllByPersonId(USER_ID);
+            case "BookRepository.streamAllByPersonId" -> {
+                try (Stream<Book> books = bookRepository.streamAllByPersonId(USER_ID)) {
+                    books.forEach(book -> {
+                    });
+                }
+            }
+            case "BookRepository.findIdPageByPersonIdAfter" ->
+                    bookRepository.findIdPageByPersonIdAfter(USER_ID, 0L, PageRequest.ofSize(51));
+            case "BookRepository.deleteAllByPersonId" -> bookRepository.deleteAllByPersonId(USER_ID);
+            case "BookRepository.deleteAllByPersonIdAndIdIn" ->
+                    bookRepository.deleteAllByPersonIdAndIdIn(USER_ID, USER_BOOK_IDS);
+            case "BookRepository.findByIdForUpdate" -> bookRepository.findByIdForUpdate(100500);
+            case "BookRepository.findIdsByPersonIdIn" -> bookRepository.findIdsByPersonIdIn(userIds);
+            case "UserRepository.findBookIdsById" -> userRepository.findBookIdsById(USER_ID);
+            case "UserRepository.findVersionById" -> userRepository.findVersionById(USER_ID);
+            case "UserRepository.findAllByIdIn" -> userRepository.findAllByIdIn(userIds);
+            case "UserRepository.findByIdForUpdate" -> userRepository.findByIdForUpdate(USER_ID);
+            case "UserRepository.findPageAfter" -> userRepository.findPageAfter(USER_ID, PageRequest.ofSize(51));
+            case "PersonAggregateRepository.findById" -> personAggregateRepository.findById(USER_ID);
+            case "PersonAggregateRepository.save" -> personAggregateRepository.findById(USER_ID)
+                    .ifPresent(personAggregateRepository::save);
+            case "PersonAggregateRepository.findSummariesByIdIn" -> personAggregateRepository.findSummariesByIdIn(userIds);
+            case "PersonAggregateRepository.findSummaryPageAfter" -> personAggregateRepository.findSummaryPageAfter(USER_ID, 51);
+            case "PersonAggregateRepository.findVersionById" -> personAggregateRepository.findVersionById(USER_ID);
+            case "PersonAggregateRepository.findPersonIdsByBookIds" ->
+                    personAggregateRepository.findPersonIdsByBookIds(USER_BOOK_IDS);
+            case "PersonAggregateRepository.findBookIdsByPersonIdIn" ->
+                    personAggregateRepository.findBookIdsByPersonIdIn(userIds);
+            case "PersonAggregateRepository.findBookIdPageByPersonIdAfter" ->
+                    personAggregateRepository.findBookIdPageByPersonIdAfter(USER_ID, 0L, 51);
+            case "BookServiceImplTemplate.getBooksByIdUser" -> bookServiceTemplate.getBooksByIdUser(USER_ID);
+            case "BookServiceImplTemplate.forEachBookByIdUser" -> bookServiceTemplate.forEachBookByIdUser(USER_ID, book -> {
+            });
+            case "BookServiceImplTemplate.getBookIdsByIdUserAfter" ->
+                    bookServiceTemplate.getBookIdsByIdUserAfter(USER_ID, 0L, 51);
+            case "BookServiceImplTemplate.deleteBooksByIdUser" -> bookServiceTemplate.deleteBooksByIdUser(USER_ID);
+            case "BookServiceImplTemplate.deleteBooksByIds" -> bookServiceTemplate.deleteBooksByIds(USER_ID, USER_BOOK_IDS);
+            case "BookServiceImplTemplate.getBookIdsByIdUsers" -> bookServiceTemplate.getBookIdsByIdUsers(userIds);
+            case "UserServiceImplTemplate.getUserVersion" -> userServiceTemplate.getUserVersion(USER_ID);
+            case "UserServiceImplTemplate.getBookIdsByIdUser" -> userServiceTemplate.getBookIdsByIdUser(USER_ID);
+            case "UserServiceImplTemplate.getUsersByIds" -> userServiceTemplate.getUsersByIds(userIds);
+            case "UserServiceImplTemplate.getUsersAfter" -> userServiceTemplate.getUsersAfter(USER_ID, 51);
+            default -> throw new IllegalArgumentException("Unknown query " + query);
+        }
+    }
+
+    /**
+     * Репозиторий агрегата Spring Data JDBC, которого нет в срезе @DataJpaTest.
+     */
+    @TestConfiguration
+    @EnableJdbcRepositories(basePackageClasses = PersonAggregateRepository.class,
+            includeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = PersonAggregateRepository.class))
+    static class AggregateRepositoryConfig extends AbstractJdbcConfiguration {
+    }
+
+    private static class StatementCapture implements QueryExecutionListener {
+        private final List<QueryInfo> statements = new ArrayList<>();
+        private volatile boolean enabled;
+
+        @Override
+        public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            if (enabled) {
+                statements.addAll(queryInfoList);
+            }
+        }
+
+        @Override
+        public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        }
+    }
+}
@@ -3,15 +3,20 @@ package ru.grigoriev.repository;
 import ru.grigoriev.config.SystemJpaTest;
 import ru.grigoriev.entity.Book;
 import ru.grigoriev.entity.Person;
+import ru.grigoriev.generator.IdAllocatorGenerator;
+import ru.grigoriev.generator.SequenceBlockIdAllocator;
 import com.vladmihalcea.sql.SQLStatementCountValidator;
+import org.hibernate.SessionFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.test.context.jdbc.Sql;
 
+import javax.persistence.EntityManager;
 import java.util.Optional;
 
 import static com.vladmihalcea.sql.SQLStatementCountValidator.*;
@@ -28,12 +33,25 @@ public class BookRepositoryTest {
     @Autowired
     UserRepository userRepository;
 
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    EntityManager entityManager;
+
+    /**
+     * Каждый тест начинает с пустого блока id и пустого кэша второго уровня,
+     * иначе число select зависит от порядка тестов.
+     */
     @BeforeEach
     void setUp() {
+        entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getCache().evictAllRegions();
+        IdAllocatorGenerator.register(new SequenceBlockIdAllocator(
+                () -> jdbcTemplate.queryForObject("SELECT nextval('sequence')", Long.class), 100));
         SQLStatementCountValidator.reset();
     }
 
-    @DisplayName("Сохранить книгу и автора. Число select должно равняться 2")
+    @DisplayName("Сохранить книгу и автора. Id берутся из одного блока, число select должно равняться 1")
     @Test
     @Rollback
     @Sql({"classpath:sql/1_clear_schema.sql",
@@ -61,7 +79,7 @@ public class BookRepositoryTest {
         //Then
         assertThat(result.getPageCount()).isEqualTo(1000);
         assertThat(result.getTitle()).isEqualTo("test");
-        assertSelectCount(2);
+        assertSelectCount(1);
         assertInsertCount(0);
         assertUpdateCount(0);
         assertDeleteCount(0);
@@ -155,6 +173,28 @@ public class BookRepositoryTest {
         assertDeleteCount(0);
     }
 
+    @DisplayName("Удалить все книги юзера одним запросом. Число delete должно равняться 1")
+    @Test
+    @Rollback
+    @Sql({"classpath:sql/1_clear_schema.sql",
+            "classpath:sql/2_insert_person_data.sql",
+            "classpath:sql/3_insert_book_data.sql"
+    })
+    void deleteBooksByPersonId_thenAssertDmlCount() {
+        //Given
+        Long idPerson = 1001L;
+
+        //When
+        int result = bookRepository.deleteAllByPersonId(idPerson);
+
+        //Then
+        assertThat(result).isEqualTo(2);
+        assertSelectCount(0);
+        assertInsertCount(0);
+        assertUpdateCount(0);
+        assertDeleteCount(1);
+    }
+
     @DisplayName("Получить ошибку при сохранении и обнавлении ниги")
     @Test
     @Rollback
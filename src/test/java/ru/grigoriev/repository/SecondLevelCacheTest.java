@@ -0,0 +1,107 @@
+package ru.grigoriev.repository;
+
+import com.vladmihalcea.sql.SQLStatementCountValidator;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.grigoriev.config.SecondLevelCacheConfig;
+import ru.grigoriev.config.SystemJpaTest;
+import ru.grigoriev.entity.Book;
+import ru.grigoriev.entity.Person;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static com.vladmihalcea.sql.SQLStatementCountValidator.assertSelectCount;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Тесты кэша второго уровня для {@link UserRepository} и {@link BookRepository}.
+ * Тесты выполняются без общей транзакции: запись в кэш видна только сессиям, открытым после нее.
+ */
+@SystemJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Sql({"classpath:sql/1_clear_schema.sql",
+        "classpath:sql/2_insert_person_data.sql",
+        "classpath:sql/3_insert_book_data.sql"
+})
+public class SecondLevelCacheTest {
+    private static final long PERSON_ID = 1001L;
+
+    @Autowired
+    BookRepository bookRepository;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getCache().evictAllRegions();
+        statistics().clear();
+        SQLStatementCountValidator.reset();
+    }
+
+    @DisplayName("Повторное чтение юзера по id берется из кэша. Число select должно равняться 1")
+    @Test
+    void findPersonById_thenAssertCacheHit() {
+        //given
+        userRepository.findById(PERSON_ID).orElseThrow();
+
+        //when
+        Person result = userRepository.findById(PERSON_ID).orElseThrow();
+
+        //then
+        assertThat(result.getFullName()).isEqualTo("default uer");
+        assertSelectCount(1);
+        assertThat(statistics().getDomainDataRegionStatistics(SecondLevelCacheConfig.PERSON_REGION).getHitCount())
+                .isEqualTo(1);
+    }
+
+    @DisplayName("Повторный запрос книг юзера берется из кэша запросов. Число select должно равняться 1")
+    @Test
+    void findAllByPersonId_thenAssertQueryCacheHit() {
+        //given
+        List<Book> expected = bookRepository.findAllByPersonId(PERSON_ID).orElseThrow();
+
+        //when
+        List<Book> result = bookRepository.findAllByPersonId(PERSON_ID).orElseThrow();
+
+        //then
+        assertThat(result).extracting(Book::getId).containsExactlyElementsOf(expected.stream().map(Book::getId).toList());
+        assertSelectCount(1);
+        assertThat(statistics().getQueryRegionStatistics(SecondLevelCacheConfig.BOOKS_BY_PERSON_REGION).getHitCount())
+                .isEqualTo(1);
+    }
+
+    @DisplayName("Запись книги сбрасывает кэш запроса книг юзера. Число select должно равняться 1")
+    @Test
+    void findAllByPersonId_afterInsert_thenAssertQueryCacheInvalidated() {
+        //given
+        List<Book> cached = bookRepository.findAllByPersonId(PERSON_ID).orElseThrow();
+        Book book = new Book();
+        book.setAuthor("Test Author");
+        book.setTitle("test");
+        book.setPageCount(100);
+        book.setPerson(userRepository.findById(PERSON_ID).orElseThrow());
+        bookRepository.save(book);
+        SQLStatementCountValidator.reset();
+
+        //when
+        List<Book> result = bookRepository.findAllByPersonId(PERSON_ID).orElseThrow();
+
+        //then
+        assertThat(result).hasSize(cached.size() + 1);
+        assertSelectCount(1);
+    }
+
+    private Statistics statistics() {
+        return entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+    }
+}
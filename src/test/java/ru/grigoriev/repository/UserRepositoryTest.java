@@ -3,15 +3,20 @@ package ru.grigoriev.repository;
 import ru.grigoriev.config.SystemJpaTest;
 import ru.grigoriev.entity.Book;
 import ru.grigoriev.entity.Person;
+import ru.grigoriev.generator.IdAllocatorGenerator;
+import ru.grigoriev.generator.SequenceBlockIdAllocator;
 import com.vladmihalcea.sql.SQLStatementCountValidator;
+import org.hibernate.SessionFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.test.context.jdbc.Sql;
 
+import javax.persistence.EntityManager;
 import java.util.Optional;
 
 import static com.vladmihalcea.sql.SQLStatementCountValidator.*;
@@ -28,8 +33,21 @@ public class UserRepositoryTest {
     @Autowired
     UserRepository userRepository;
 
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    EntityManager entityManager;
+
+    /**
+     * Каждый тест начинает с пустого блока id и пустого кэша второго уровня,
+     * иначе число select зависит от порядка тестов.
+     */
     @BeforeEach
     void setUp() {
+        entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getCache().evictAllRegions();
+        IdAllocatorGenerator.register(new SequenceBlockIdAllocator(
+                () -> jdbcTemplate.queryForObject("SELECT nextval('sequence')", Long.class), 100));
         SQLStatementCountValidator.reset();
     }
 
@@ -16,7 +16,11 @@ import org.mockito.Mock;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -39,6 +43,9 @@ public class BookServiceImplTest {
     @Mock
     BookMapper bookMapper;
 
+    @Mock
+    EntityManager entityManager;
+
     @Test
     @DisplayName("Создание книги. Должно пройти успешно.")
     void saveBook_Test() {
@@ -83,6 +90,49 @@ public class BookServiceImplTest {
         assertEquals(1L, bookDtoResult.getId());
     }
 
+    @Test
+    @DisplayName("Пакетное создание книг. Должно пройти одним вызовом saveAll.")
+    void saveBooks_Test() {
+        //given
+        BookDto firstBookDto = new BookDto();
+        firstBookDto.setUserId(1L);
+        firstBookDto.setAuthor("first author");
+        firstBookDto.setTitle("first title");
+        firstBookDto.setPageCount(100);
+
+        BookDto secondBookDto = new BookDto();
+        secondBookDto.setUserId(1L);
+        secondBookDto.setAuthor("second author");
+        secondBookDto.setTitle("second title");
+        secondBookDto.setPageCount(200);
+
+        Book firstBook = new Book();
+        firstBook.setTitle("first title");
+        Book secondBook = new Book();
+        secondBook.setTitle("second title");
+
+        BookDto firstResult = new BookDto();
+        firstResult.setId(1L);
+        BookDto secondResult = new BookDto();
+        secondResult.setId(2L);
+
+        //when
+        when(bookMapper.bookDtoToBook(firstBookDto)).thenReturn(firstBook);
+        when(bookMapper.bookDtoToBook(secondBookDto)).thenReturn(secondBook);
+        when(bookRepository.saveAll(List.of(firstBook, secondBook))).thenReturn(List.of(firstBook, secondBook));
+        when(bookMapper.bookToBookDto(firstBook)).thenReturn(firstResult);
+        when(bookMapper.bookToBookDto(secondBook)).thenReturn(secondResult);
+
+        //then
+        List<BookDto> bookDtoResult = bookService.createBooks(List.of(firstBookDto, secondBookDto));
+        assertEquals(2, bookDtoResult.size());
+        assertEquals(1L, bookDtoResult.get(0).getId());
+        assertEquals(2L, bookDtoResult.get(1).getId());
+        assertEquals(1L, firstBook.getPerson().getId());
+        verify(bookRepository, times(1)).saveAll(List.of(firstBook, secondBook));
+        verify(bookRepository, never()).save(any());
+    }
+
     @Test
     @DisplayName("Обновление книги. Должно пройти успешно.")
     void updateBook_Test() {
@@ -179,6 +229,51 @@ public class BookServiceImplTest {
         verify(bookRepository, times(1)).deleteById(id);
     }
 
+    @Test
+    @DisplayName("Удаление всех книг пользователя. Должно пройти одним запросом.")
+    void deleteBooksByUser_Test() {
+        //given
+        Long userId = 1L;
+        when(bookRepository.deleteAllByPersonId(userId)).thenReturn(2);
+
+        //when
+        bookService.deleteBooksByIdUser(userId);
+
+        //then
+        verify(bookRepository, times(1)).deleteAllByPersonId(userId);
+        verify(bookRepository, never()).deleteById(any());
+    }
+
+    @Test
+    @DisplayName("Потоковое чтение книг пользователя. Книги отсоединяются от контекста по одной.")
+    void forEachBookByUser_Test() {
+        //given
+        Long userId = 1L;
+        Book firstBook = new Book();
+        firstBook.setId(1L);
+        Book secondBook = new Book();
+        secondBook.setId(2L);
+
+        BookDto firstBookDto = new BookDto();
+        firstBookDto.setId(1L);
+        BookDto secondBookDto = new BookDto();
+        secondBookDto.setId(2L);
+
+        List<BookDto> result = new ArrayList<>();
+
+        //when
+        when(bookRepository.streamAllByPersonId(userId)).thenReturn(Stream.of(firstBook, secondBook));
+        when(bookMapper.bookToBookDto(firstBook)).thenReturn(firstBookDto);
+        when(bookMapper.bookToBookDto(secondBook)).thenReturn(secondBookDto);
+        bookService.forEachBookByIdUser(userId, result::add);
+
+        //then
+        assertEquals(List.of(firstBookDto, secondBookDto), result);
+        verify(entityManager, times(1)).detach(firstBook);
+        verify(entityManager, times(1)).detach(secondBook);
+        verify(bookRepository, never()).findAllByPersonId(any());
+    }
+
     @Test
     @DisplayName("Попытка создание книги с некорректными данными.")
     void saveBook_FailTest() {
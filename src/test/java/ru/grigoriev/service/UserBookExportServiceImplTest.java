@@ -0,0 +1,46 @@
+package ru.grigoriev.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.context.jdbc.Sql;
+import ru.grigoriev.config.SystemJpaTest;
+import ru.grigoriev.service.impl.UserBookExportServiceImpl;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Тестирование функционала {@link UserBookExportServiceImpl} на PostgreSQL.
+ */
+@SystemJpaTest
+@Import({UserBookExportServiceImpl.class, JacksonAutoConfiguration.class})
+public class UserBookExportServiceImplTest {
+    @Autowired
+    UserBookExportService userBookExportService;
+
+    @DisplayName("Выгрузить пользователей с id книг в NDJSON")
+    @Test
+    @Rollback
+    @Sql({"classpath:sql/1_clear_schema.sql",
+            "classpath:sql/2_insert_person_data.sql",
+            "classpath:sql/3_insert_book_data.sql"
+    })
+    void exportUsersWithBooks_thenAssertNdjson() {
+        //Given
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        //When
+        long result = userBookExportService.exportUsersWithBooks(outputStream);
+
+        //Then
+        assertThat(result).isEqualTo(1);
+        assertThat(outputStream.toString(StandardCharsets.UTF_8))
+                .isEqualTo("{\"userId\":1001,\"booksIdList\":[2002,3003]}\n");
+    }
+}
@@ -0,0 +1,140 @@
+package ru.grigoriev.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.context.jdbc.Sql;
+import ru.grigoriev.config.SystemJpaTest;
+import ru.grigoriev.dto.ImportStatusDto;
+import ru.grigoriev.mapper.BookMapperImpl;
+import ru.grigoriev.mapper.UserMapperImpl;
+import ru.grigoriev.service.impl.UserBookImportServiceImpl;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Тестирование функционала {@link UserBookImportServiceImpl} на PostgreSQL.
+ */
+@SystemJpaTest
+@Import({UserBookImportServiceImpl.class, JacksonAutoConfiguration.class, ValidationAutoConfiguration.class,
+        UserMapperImpl.class, BookMapperImpl.class})
+public class UserBookImportServiceImplTest {
+    @Autowired
+    UserBookImportService userBookImportService;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @DisplayName("Загрузить NDJSON через COPY. Невалидные записи отклоняются")
+    @Test
+    @Rollback
+    @Sql({"classpath:sql/1_clear_schema.sql"})
+    void importUsersWithBooks_thenAssertRowCount() {
+        //Given
+        String ndjson = """
+                {"userRequest":{"fullName":"First Reader","title":"first","age":20},"bookRequests":[{"title":"first book","author":"author, \\"one\\"","pageCount":100},{"title":"second book","author":"author","pageCount":200}]}
+                {"userRequest":null,"bookRequests":[]}
+                {"userRequest":{"fullName":"Second Reader","title":"second","age":30},"bookRequests":[]}
+                """;
+
+        //When
+        ImportStatusDto result = userBookImportService.importUsersWithBooks("import-1",
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+
+        //Then
+        assertThat(result.getState()).isEqualTo(ImportStatusDto.ImportState.COMPLETED);
+        assertThat(result.getUsersImported()).isEqualTo(2);
+        assertThat(result.getBooksImported()).isEqualTo(2);
+        assertThat(result.getRecordsRejected()).isEqualTo(1);
+        assertThat(userBookImportService.getImportStatus("import-1").getUsersImported()).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM myschema.person", Long.class)).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT author FROM myschema.book WHERE title = 'first book'", String.class))
+                .isEqualTo("author, \"one\"");
+    }
+
+    @DisplayName("Записи, нарушающие ограничения DTO, отклоняются по одной, порция загружается")
+    @Test
+    @Rollback
+    @Sql({"classpath:sql/1_clear_schema.sql"})
+    void importUsersWithBooks_thenAssertConstraintViolationsRejected() {
+        //Given
+        String ndjson = """
+                {"userRequest":{"fullName":"Valid Reader","title":"valid","age":20},"bookRequests":[{"title":"valid book","author":"author","pageCount":100}]}
+                {"userRequest":{"fullName":"Young Reader","title":"young","age":3},"bookRequests":[]}
+                {"userRequest":{"fullName":"Empty Book Reader","title":"empty book","age":20},"bookRequests":[{"title":"empty book","author":"author","pageCount":0}]}
+                {"userRequest":{"fullName":"Long Title Reader","title":"long title","age":20},"bookRequests":[{"title":"%s","author":"author","pageCount":100}]}
+                """.formatted("t".repeat(51));
+
+        //When
+        ImportStatusDto result = userBookImportService.importUsersWithBooks("import-2",
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+
+        //Then
+        assertThat(result.getState()).isEqualTo(ImportStatusDto.ImportState.COMPLETED);
+        assertThat(result.getUsersImported()).isEqualTo(1);
+        assertThat(result.getBooksImported()).isEqualTo(1);
+        assertThat(result.getRecordsRejected()).isEqualTo(3);
+        assertThat(result.getChunksFailed()).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT full_name FROM myschema.person", String.class))
+                .isEqualTo("Valid Reader");
+    }
+
+    @DisplayName("Пользователь с занятой должностью отклоняется один вместе с книгами, остальная порция загружается")
+    @Test
+    @Rollback
+    @Sql({"classpath:sql/1_clear_schema.sql"})
+    void importUsersWithBooks_thenAssertTitleConflictsRejected() {
+        //Given
+        jdbcTemplate.update("INSERT INTO myschema.person (id, full_name, title, age) VALUES (-1, 'Stored Reader', 'stored', 40)");
+        String ndjson = """
+                {"userRequest":{"fullName":"First Reader","title":"first","age":20},"bookRequests":[{"title":"first book","author":"author","pageCount":100}]}
+                {"userRequest":{"fullName":"Stored Twin","title":"stored","age":20},"bookRequests":[{"title":"stored book","author":"author","pageCount":100}]}
+                {"userRequest":{"fullName":"First Twin","title":"first","age":30},"bookRequests":[{"title":"twin book","author":"author","pageCount":100}]}
+                {"userRequest":{"fullName":"Second Reader","title":"second","age":30},"bookRequests":[]}
+                """;
+
+        //When
+        ImportStatusDto result = userBookImportService.importUsersWithBooks("import-3",
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+
+        //Then
+        assertThat(result.getState()).isEqualTo(ImportStatusDto.ImportState.COMPLETED);
+        assertThat(result.getUsersImported()).isEqualTo(2);
+        assertThat(result.getBooksImported()).isEqualTo(1);
+        assertThat(result.getRecordsRejected()).isEqualTo(2);
+        assertThat(result.getChunksFailed()).isZero();
+        assertThat(result.getLastError()).startsWith("User title already exists:");
+        assertThat(jdbcTemplate.queryForList("SELECT full_name FROM myschema.person ORDER BY age, id", String.class))
+                .containsExactly("First Reader", "Second Reader", "Stored Reader");
+        assertThat(jdbcTemplate.queryForList("SELECT title FROM myschema.book", String.class))
+                .containsExactly("first book");
+    }
+
+    @DisplayName("Повторный запуск импорта с занятым id отклоняется, статус идущего импорта не перезаписывается")
+    @Test
+    @Rollback
+    @Sql({"classpath:sql/1_clear_schema.sql"})
+    void importUsersWithBooks_thenAssertImportIdReuseRejected() {
+        //Given
+        String ndjson = """
+                {"userRequest":{"fullName":"First Reader","title":"first","age":20},"bookRequests":[]}
+                """;
+        userBookImportService.importUsersWithBooks("import-4", new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+
+        //When
+        //Then
+        assertThatThrownBy(() -> userBookImportService.importUsersWithBooks("import-4",
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8))))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(userBookImportService.getImportStatus("import-4").getUsersImported()).isEqualTo(1);
+    }
+}
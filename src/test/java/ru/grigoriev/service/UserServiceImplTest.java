@@ -15,8 +15,13 @@ import org.mockito.Mock;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.BDDMockito.*;
@@ -37,6 +42,9 @@ public class UserServiceImplTest {
     @Mock
     UserMapper userMapper;
 
+    @Mock
+    EntityManager entityManager;
+
     @Test
     @DisplayName("Создание пользователя. Должно пройти успешно.")
     void savePerson_Test() {
@@ -111,6 +119,7 @@ public class UserServiceImplTest {
         assertEquals(11, userDtoResult.getAge());
         assertEquals("test name", userDtoResult.getFullName());
         assertEquals("test title", userDtoResult.getTitle());
+        verify(entityManager).lock(updatePerson, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
     }
 
     @Test
@@ -142,6 +151,56 @@ public class UserServiceImplTest {
         assertEquals("test title", userDtoResult.getTitle());
     }
 
+    @Test
+    @DisplayName("Получение id книг пользователя одним запросом. Должно пройти успешно.")
+    void getBookIds_Test() {
+        //given
+        Long id = 1L;
+
+        //when
+        when(userRepository.findBookIdsById(id)).thenReturn(List.of(10L, 20L));
+        when(userRepository.findBookIdsById(2L)).thenReturn(Arrays.asList((Long) null));
+
+        //then
+        assertThat(userService.getBookIdsByIdUser(id)).containsExactly(10L, 20L);
+        assertThat(userService.getBookIdsByIdUser(2L)).isEmpty();
+        verify(userRepository, never()).findById(any());
+    }
+
+    @Test
+    @DisplayName("Попытка получения id книг не существующего пользователя.")
+    void getBookIds_FailTest() {
+        //given
+        Long id = 1L;
+
+        //when
+        when(userRepository.findBookIdsById(id)).thenReturn(List.of());
+
+        //then
+        assertThatThrownBy(() -> userService.getBookIdsByIdUser(id))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessage("User does not exist in the database");
+    }
+
+    @Test
+    @DisplayName("Получение версии пользователя без загрузки пользователя и книг.")
+    void getUserVersion_Test() {
+        //given
+        Long id = 1L;
+
+        //when
+        when(userRepository.findVersionById(id)).thenReturn(Optional.of(3L));
+        when(userRepository.findVersionById(2L)).thenReturn(Optional.empty());
+
+        //then
+        assertThat(userService.getUserVersion(id)).isEqualTo(3L);
+        assertThatThrownBy(() -> userService.getUserVersion(2L))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessage("User does not exist in the database");
+        verify(userRepository, never()).findById(any());
+        verify(userRepository, never()).findBookIdsById(any());
+    }
+
     @Test
     @DisplayName("Удаление пользователя. Должно пройти успешно.")
     void deletePerson_Test() {
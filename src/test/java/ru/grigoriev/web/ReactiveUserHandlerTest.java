@@ -0,0 +1,210 @@
+package ru.grigoriev.web;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import ru.grigoriev.config.ReactiveConfig;
+import ru.grigoriev.config.UnitTest;
+import ru.grigoriev.exception.NotFoundException;
+import ru.grigoriev.facade.ReactiveUserDataFacade;
+import ru.grigoriev.generator.IdAllocator;
+import ru.grigoriev.mapper.BookMapperImpl;
+import ru.grigoriev.mapper.UserMapperImpl;
+import ru.grigoriev.web.request.UserBookRequest;
+import ru.grigoriev.web.request.UserRequest;
+import ru.grigoriev.web.response.UserBookResponse;
+
+import javax.validation.Validation;
+import java.time.Duration;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Тестирование маршрутов профиля reactive и {@link ReactiveUserHandler}.
+ */
+@UnitTest
+@DisplayName("Testing reactive user routes.")
+public class ReactiveUserHandlerTest {
+    private static final String USER_URL = "/api/v1/user";
+
+    @Mock
+    private ReactiveUserDataFacade reactiveUserDataFacade;
+
+    @Mock
+    private R2dbcEntityTemplate entityTemplate;
+
+    @Mock
+    private TransactionalOperator transactionalOperator;
+
+    @Mock
+    private IdAllocator idAllocator;
+
+    private ReactiveConfig reactiveConfig;
+    private WebTestClient client;
+
+    @BeforeEach
+    void setUp() {
+        R2dbcProperties properties = new R2dbcProperties();
+        properties.setUrl("r2dbc:postgresql://localhost:5432/userbook");
+        properties.setUsername("postgres");
+        reactiveConfig = new ReactiveConfig(properties);
+        client = WebTestClient.bindToRouterFunction(
+                reactiveConfig.reactiveUserRoutes(new ReactiveUserHandler(reactiveUserDataFacade))).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reactiveConfig.destroy();
+    }
+
+    @Test
+    @DisplayName("Создание пользователя отдает id пользователя и его книг.")
+    void createUserWithBooks_Test() {
+        //given
+        when(reactiveUserDataFacade.createUserWithBooks(any(UserBookRequest.class)))
+                .thenReturn(Mono.just(response(1L, new long[]{2L, 3L})));
+
+        //when
+        WebTestClient.ResponseSpec response = client.post().uri(USER_URL + "/create")
+                .header("rqid", "rq-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new UserBookRequest())
+                .exchange();
+
+        //then
+        response.expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.userId").isEqualTo(1)
+                .jsonPath("$.booksIdList[1]").isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Создание без заголовка rqid отклоняется до обращения к базе.")
+    void createUserWithBooks_MissingRequestIdTest() {
+        //when
+        WebTestClient.ResponseSpec response = client.post().uri(USER_URL + "/create")
+                .header("rqid", "rq 1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new UserBookRequest())
+                .exchange();
+
+        //then
+        response.expectStatus().isBadRequest();
+        verifyNoInteractions(reactiveUserDataFacade);
+    }
+
+    @Test
+    @DisplayName("Отсутствующий пользователь - 400, конфликт версий - 409, как у UserController.")
+    void errorMapping_Test() {
+        //given
+        when(reactiveUserDataFacade.getUserWithBooks(1L))
+                .thenReturn(Mono.error(new NotFoundException("User does not exist in the database")));
+        when(reactiveUserDataFacade.updateUserWithBooks(eq(2L), any(UserBookRequest.class)))
+                .thenReturn(Mono.error(new OptimisticLockingFailureException("conflict")));
+
+        //then
+        client.get().uri(USER_URL + "/get/1").exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.errorMessage").isEqualTo("User does not exist in the database");
+        client.put().uri(USER_URL + "/update/2")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new UserBookRequest())
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT);
+    }
+
+    @Test
+    @DisplayName("Нечисловой id пользователя и пустое тело запроса - 400, как у UserController.")
+    void invalidRequest_Test() {
+        //when
+        //then
+        client.get().uri(USER_URL + "/get/abc").exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.errorMessage").isEqualTo("The request is invalid, userId is not a number: abc");
+        client.delete().uri(USER_URL + "/delete/abc").exchange()
+                .expectStatus().isBadRequest();
+        client.put().uri(USER_URL + "/update/2")
+                .contentType(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.errorMessage").isEqualTo("The request is invalid, the request body is missing");
+        client.post().uri(USER_URL + "/create")
+                .header("rqid", "rq-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isBadRequest();
+        verifyNoInteractions(reactiveUserDataFacade);
+    }
+
+    @Test
+    @DisplayName("Нарушение ограничений DTO - 400 до транзакции и выделения id, как у UserController.")
+    void createUserWithBooks_ConstraintViolationTest() {
+        //given
+        when(transactionalOperator.transactional(ArgumentMatchers.<Mono<UserBookResponse>>any())).thenAnswer(invocation -> invocation.getArgument(0));
+        ReactiveUserDataFacade facade = new ReactiveUserDataFacade(entityTemplate, transactionalOperator, idAllocator,
+                new UserMapperImpl(), new BookMapperImpl(), Validation.buildDefaultValidatorFactory().getValidator(),
+                3, Duration.ZERO, Duration.ZERO);
+        WebTestClient validatingClient = WebTestClient.bindToRouterFunction(
+                reactiveConfig.reactiveUserRoutes(new ReactiveUserHandler(facade))).build();
+        UserRequest userRequest = new UserRequest();
+        userRequest.setFullName("Ivan Ivanov");
+        userRequest.setTitle("Engineer");
+        userRequest.setAge(3);
+        UserBookRequest request = new UserBookRequest();
+        request.setUserRequest(userRequest);
+        request.setBookRequests(List.of());
+
+        //when
+        WebTestClient.ResponseSpec response = validatingClient.post().uri(USER_URL + "/create")
+                .header("rqid", "rq-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchange();
+
+        //then
+        response.expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.errorMessage").isEqualTo("age: Age should be over six");
+        verifyNoInteractions(entityTemplate, idAllocator);
+    }
+
+    @Test
+    @DisplayName("Удаление пользователя отдает пустой ответ 200.")
+    void deleteUserWithBooks_Test() {
+        //given
+        when(reactiveUserDataFacade.deleteUserWithBooks(5L)).thenReturn(Mono.empty());
+
+        //when
+        WebTestClient.ResponseSpec response = client.delete().uri(USER_URL + "/delete/5").exchange();
+
+        //then
+        response.expectStatus().isOk().expectBody().isEmpty();
+        verify(reactiveUserDataFacade).deleteUserWithBooks(5L);
+    }
+
+    private UserBookResponse response(Long userId, long[] bookIds) {
+        return UserBookResponse.builder()
+                .userId(userId)
+                .booksIdList(bookIds)
+                .build();
+    }
+}
@@ -0,0 +1,114 @@
+package ru.grigoriev.web;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import ru.grigoriev.config.UnitTest;
+import ru.grigoriev.facade.UserDataFacade;
+import ru.grigoriev.web.handler.ControllerExceptionHandler;
+import ru.grigoriev.web.response.UserBookResponse;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Тестирование ETag и 304 Not Modified в {@link UserController}.
+ */
+@UnitTest
+@DisplayName("Testing conditional GET of a user with books.")
+public class UserControllerTest {
+    private static final String GET_URL = "/api/v1/user/get/1";
+
+    @Mock
+    private UserDataFacade userDataFacade;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(new UserController(userDataFacade))
+                .setControllerAdvice(new ControllerExceptionHandler())
+                .build();
+    }
+
+    @Test
+    @DisplayName("Без If-None-Match отдается тело из кэша и ETag его версии, если она совпадает с версией в базе.")
+    void getUserWithBooks_Test() throws Exception {
+        //given
+        when(userDataFacade.getUserVersion(1L)).thenReturn(5L);
+        when(userDataFacade.getUserWithBooks(1L)).thenReturn(response(5L));
+
+        //then
+        mockMvc.perform(get(GET_URL))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"5\""))
+                .andExpect(jsonPath("$.userId").value(1))
+                .andExpect(jsonPath("$.version").doesNotExist());
+        verify(userDataFacade, never()).refreshUserWithBooks(anyLong());
+    }
+
+    @Test
+    @DisplayName("Совпавший If-None-Match дает 304 с ETag без чтения книг.")
+    void getUserWithBooks_NotModifiedTest() throws Exception {
+        //given
+        when(userDataFacade.getUserVersion(1L)).thenReturn(5L);
+
+        //then
+        mockMvc.perform(get(GET_URL).header(HttpHeaders.IF_NONE_MATCH, "W/\"5\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"5\""))
+                .andExpect(content().string(""));
+        verify(userDataFacade).getUserVersion(1L);
+        verifyNoMoreInteractions(userDataFacade);
+    }
+
+    @Test
+    @DisplayName("Тело из кэша старше версии в базе перечитывается, ETag берется из версии нового тела.")
+    void getUserWithBooks_StaleCacheTest() throws Exception {
+        //given
+        when(userDataFacade.getUserVersion(1L)).thenReturn(5L);
+        when(userDataFacade.getUserWithBooks(1L)).thenReturn(response(4L));
+        when(userDataFacade.refreshUserWithBooks(1L)).thenReturn(response(5L));
+
+        //then
+        mockMvc.perform(get(GET_URL).header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"5\""))
+                .andExpect(jsonPath("$.booksIdList[0]").value(2));
+        verify(userDataFacade).refreshUserWithBooks(1L);
+    }
+
+    @Test
+    @DisplayName("Тело из кэша новее версии с отстающей реплики отдается без перечитывания.")
+    void getUserWithBooks_LaggingVersionTest() throws Exception {
+        //given
+        when(userDataFacade.getUserVersion(1L)).thenReturn(4L);
+        when(userDataFacade.getUserWithBooks(1L)).thenReturn(response(5L));
+
+        //then
+        mockMvc.perform(get(GET_URL))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"5\""));
+        verify(userDataFacade, never()).refreshUserWithBooks(anyLong());
+    }
+
+    private UserBookResponse response(long version) {
+        return UserBookResponse.builder()
+                .userId(1L)
+                .booksIdList(new long[]{2L, 3L})
+                .version(version)
+                .build();
+    }
+}
@@ -0,0 +1,146 @@
+package ru.grigoriev.web.filter;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+import ru.grigoriev.config.SqlStatementBudgetProperties;
+import ru.grigoriev.statistics.SqlStatementCounter;
+import ru.grigoriev.statistics.SqlStatementCountingInspector;
+import ru.grigoriev.web.constant.WebConstant;
+
+import javax.servlet.FilterChain;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Тестирование подсчета SQL-запросов в {@link HttpRequestFilter}.
+ */
+@DisplayName("Testing per-request SQL statement counting.")
+public class HttpRequestFilterTest {
+    private static final String ENDPOINT = "/api/v1/user/get/{userId}";
+
+    private SqlStatementCounter counter;
+    private SqlStatementBudgetProperties budgetProperties;
+    private SimpleMeterRegistry meterRegistry;
+    private HttpRequestFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        counter = new SqlStatementCounter();
+        budgetProperties = new SqlStatementBudgetProperties();
+        budgetProperties.getBudgets().put("GET " + ENDPOINT, 2);
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new HttpRequestFilter(counter, budgetProperties, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Число запросов отдается в заголовке и метрике по endpoint-у.")
+    void doFilter_Test() throws Exception {
+        //given
+        MockHttpServletRequest request = request("rq-1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        SqlStatementCountingInspector inspector = new SqlStatementCountingInspector(counter);
+
+        //when
+        filter.doFilter(request, response, executing(2, inspector));
+
+        //then
+        assertThat(response.getHeader(WebConstant.SQL_STATEMENT_COUNT)).isEqualTo("2");
+        DistributionSummary summary = meterRegistry.get(HttpRequestFilter.SQL_STATEMENTS_METRIC)
+                .tag("uri", ENDPOINT)
+                .summary();
+        assertThat(summary.count()).isEqualTo(1);
+        assertThat(summary.totalAmount()).isEqualTo(2);
+        assertThat(counter.current()).isZero();
+    }
+
+    @Test
+    @DisplayName("Превышение бюджета (N+1) роняет запрос в строгом режиме.")
+    void doFilter_FailTest() {
+        //given
+        budgetProperties.setFailOnExceeded(true);
+        MockHttpServletRequest request = request("rq-2");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        SqlStatementCountingInspector inspector = new SqlStatementCountingInspector(counter);
+
+        //then
+        assertThatThrownBy(() -> filter.doFilter(request, response, executing(3, inspector)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("GET " + ENDPOINT);
+        assertThat(response.isCommitted()).isFalse();
+        assertThat(response.getContentLength()).isZero();
+        assertThat(meterRegistry.get(HttpRequestFilter.SQL_STATEMENTS_METRIC).summary().totalAmount()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Одновременные запросы с одинаковым rqid считаются раздельно.")
+    void doFilter_SameRequestIdTest() throws Exception {
+        //given
+        SqlStatementCountingInspector inspector = new SqlStatementCountingInspector(counter);
+        CountDownLatch started = new CountDownLatch(2);
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        //when
+        try {
+            Future<?> firstRequest = executor.submit(() -> doFilter(request("rq-3"), first, awaiting(started, 1, inspector)));
+            Future<?> secondRequest = executor.submit(() -> doFilter(request("rq-3"), second, awaiting(started, 2, inspector)));
+            firstRequest.get(10, TimeUnit.SECONDS);
+            secondRequest.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        //then
+        assertThat(first.getHeader(WebConstant.SQL_STATEMENT_COUNT)).isEqualTo("1");
+        assertThat(second.getHeader(WebConstant.SQL_STATEMENT_COUNT)).isEqualTo("2");
+        assertThat(meterRegistry.get(HttpRequestFilter.SQL_STATEMENTS_METRIC).summary().totalAmount()).isEqualTo(3);
+    }
+
+    private Void doFilter(MockHttpServletRequest request, MockHttpServletResponse response, FilterChain chain) throws Exception {
+        filter.doFilter(request, response, chain);
+        return null;
+    }
+
+    private MockHttpServletRequest request(String requestId) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/user/get/1");
+        request.addHeader(WebConstant.RQID, requestId);
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, ENDPOINT);
+        return request;
+    }
+
+    /**
+     * Оба запроса начинаются до того, как любой из них выполнит SQL и завершится.
+     */
+    private FilterChain awaiting(CountDownLatch started, int statements, SqlStatementCountingInspector inspector) {
+        return (request, response) -> {
+            started.countDown();
+            try {
+                started.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executing(statements, inspector).doFilter(request, response);
+        };
+    }
+
+    private FilterChain executing(int statements, SqlStatementCountingInspector inspector) {
+        return (request, response) -> {
+            IntStream.range(0, statements).forEach(i -> inspector.inspect("select 1"));
+            response.getWriter().write("{}");
+        };
+    }
+}
@@ -0,0 +1,10 @@
+insert into myschema.person (ID, FULL_NAME, TITLE, AGE)
+select 10000 + n, 'plan user ' || n, 'plan title ' || n, 30
+from generate_series(1, 1000) n;
+
+insert into myschema.book (ID, PERSON_ID, TITLE, AUTHOR, PAGE_COUNT)
+select 100000 + n, 10000 + (n % 1000) + 1, 'plan book ' || n, 'plan author', 100
+from generate_series(1, 50000) n;
+
+analyze myschema.person;
+analyze myschema.book;